@@ -0,0 +1,61 @@
+package application;
+
+/**
+ *Cylindrical Mirror Anamorphosis
+ *Benchmark inputs
+ *
+ *Shared parameter set and synthetic input images for the benchmarks, so all
+ *of them measure the same geometry (r = 1, h = 3, vx = 10, vz = 10 in).
+ *
+ * @author  Garrett R. Mackelprang
+ * @version 1.02
+ * @edited  2026.10.17
+ */
+
+class BenchData {
+
+	//sets Transform options to the benchmark parameter set and defaults
+	static void options(int n, double dpiT) {
+		Transform.r            = 1;
+		Transform.h            = 3;
+		Transform.vx           = 10;
+		Transform.vz           = 10;
+		Transform.dpiT         = dpiT;
+		Transform.n            = n;
+		Transform.renderEngine = Transform.SCANLINE;
+		Transform.filter       = InverseMapper.BILINEAR;
+		Transform.tileSize     = 0;
+		Transform.threads      = 0;
+		Transform.rollingGrid  = true;
+		Transform.hqMethod     = true;
+		Transform.aaSamples    = 0;
+		Transform.drawCylinder = true;
+		Transform.ignoreColor  = null;
+		Transform.backgndColor = null;
+	}
+
+	//resized image size {newImgW,newImgH,dpiN} of an image imgW pixels wide
+	//that fills the picture plane width (no resizing by newImgSize)
+	static double[] newImgSize(int imgW) {
+		double maxW = 2*Transform.r;
+		double maxH = (Transform.vx*Transform.h - Transform.vz*Transform.r)/(Transform.vx - Transform.r);
+		double dpiN = imgW/maxW;
+		return new double[] {imgW, Math.floor(maxH*dpiN), dpiN};
+	}
+
+	//packed ARGB test image: color gradients, a transparent corner and flat
+	//blocks, so fills, blending and PNG filters all see typical content
+	static int[] pixels(int imgW, int imgH) {
+		int[] argb = new int[imgW*imgH];
+		for(int i=0; i<imgH; i++) {
+			for(int j=0; j<imgW; j++) {
+				int a = i < imgH/8 && j < imgW/8 ? 0 : 0xff;
+				int r = 255*j/imgW;
+				int g = 255*i/imgH;
+				int b = ((i/16 + j/16) & 1) == 0 ? 0x40 : 0xc0;
+				argb[i*imgW + j] = a<<24 | r<<16 | g<<8 | b;
+			}
+		}
+		return argb;
+	}
+}
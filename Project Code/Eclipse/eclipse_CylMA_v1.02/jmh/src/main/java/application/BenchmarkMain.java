@@ -0,0 +1,43 @@
+package application;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ *Cylindrical Mirror Anamorphosis
+ *Benchmark launcher
+ *
+ *Runs the JMH suite and writes results as JSON, so runs of different releases
+ *can be compared. Build and run from the jmh directory:
+ *
+ *   mvn -B package
+ *   java -jar target/benchmarks.jar                       (all, jmh-result.json)
+ *   java -jar target/benchmarks.jar Grid -p n=0,2 -rff grid-1.02.json
+ *
+ *Any JMH option may be given (-h lists them). Results go to jmh-result.json
+ *unless -rf/-rff are given.
+ *
+ * @author  Garrett R. Mackelprang
+ * @version 1.02
+ * @edited  2026.10.17
+ */
+
+public class BenchmarkMain {
+
+	public static void main(String[] args) throws Exception {
+		List<String> jmhArgs = new ArrayList<>(Arrays.asList(args));
+
+		//JSON results unless another format is asked for
+		if(!jmhArgs.contains("-rf")) {
+			jmhArgs.add(0, "json");
+			jmhArgs.add(0, "-rf");
+		}
+		if(!jmhArgs.contains("-rff")) {
+			jmhArgs.add(0, "jmh-result.json");
+			jmhArgs.add(0, "-rff");
+		}
+
+		org.openjdk.jmh.Main.main(jmhArgs.toArray(new String[0]));
+	}
+}
@@ -0,0 +1,95 @@
+package application;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ *Cylindrical Mirror Anamorphosis
+ *Grid generation benchmark
+ *
+ *Picture plane grid (yzGrid), minX/minY search (offsets), full output grid
+ *(GridMapper column terms plus xyGrid) and the rolling two row window, for
+ *several input widths and interpolating point counts.
+ *
+ * @author  Garrett R. Mackelprang
+ * @version 1.02
+ * @edited  2026.10.17
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class GridBenchmark {
+
+	@Param({"500", "1000", "2000"})
+	public int imgW; //resized input width
+
+	@Param({"0", "2", "5"})
+	public int n;    //interpolating points
+
+	private double[]   newImgSize;
+	private double[][] yzGrid;
+	private double     rPhy;
+	private double     vxPhy;
+	private double     vzPhy;
+	private double     minX;
+	private double     minY;
+	private double     s;
+
+	@Setup
+	public void setup() {
+		BenchData.options(n, 600);
+		newImgSize = BenchData.newImgSize(imgW);
+		yzGrid     = Transform.yzGrid(newImgSize);
+
+		double dpiN = newImgSize[2];
+		s     = dpiN/Transform.dpiT;
+		rPhy  = dpiN*Transform.r;
+		vxPhy = dpiN*Transform.vx;
+		vzPhy = dpiN*Transform.vz;
+
+		double[] offsets = Transform.offsets(yzGrid, rPhy, vxPhy, vzPhy, newImgSize);
+		minX = offsets[0];
+		minY = offsets[1];
+	}
+
+	@Benchmark
+	public double[][] yzGrid() {
+		return Transform.yzGrid(newImgSize);
+	}
+
+	@Benchmark
+	public double[] offsets() {
+		return Transform.offsets(yzGrid, rPhy, vxPhy, vzPhy, newImgSize);
+	}
+
+	@Benchmark
+	public double[][] xyGrid() {
+		GridMapper mapper = new GridMapper(yzGrid[0], rPhy, vxPhy, vzPhy, minX, minY, s);
+		return Transform.xyGrid(yzGrid, mapper, newImgSize);
+	}
+
+	@Benchmark
+	public void rollingGrid(Blackhole bh) {
+		GridMapper mapper = new GridMapper(yzGrid[0], rPhy, vxPhy, vzPhy, minX, minY, s);
+		GridMapper.Window window = mapper.window(yzGrid[1]);
+		for(int i=0; i<yzGrid[1].length - 1; i++) {
+			bh.consume(window.rows(i));
+		}
+	}
+}
@@ -0,0 +1,124 @@
+package application;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ *Cylindrical Mirror Anamorphosis
+ *anamorphicT kernel benchmark
+ *
+ *Maps ROWS grid rows of a typical picture plane with the scalar anamorphicT
+ *(new double[2] per point), the batched kernel and the separable GridMapper.
+ *Setup checks that all three give the same points.
+ *
+ * @author  Garrett R. Mackelprang
+ * @version 1.02
+ * @edited  2026.10.17
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KernelBenchmark {
+
+	private static final int ROWS = 64; //grid rows per operation
+
+	//physical parameters in input pixel units (r = 1 in, vx = vz = 10 in at 2000 DPI)
+	private static final double R  = 2000;
+	private static final double VX = 20000;
+	private static final double VZ = 20000;
+
+	@Param({"1024", "8192"})
+	public int width; //grid points per row
+
+	private double[] py;
+	private double[] pz;
+	private double[] x;
+	private double[] y;
+	private GridMapper mapper;
+
+	@Setup
+	public void setup() {
+		py = new double[width];
+		pz = new double[width];
+		x  = new double[width];
+		y  = new double[width];
+		for(int j=0; j<width; j++) {
+			py[j] = (j + 0.5)*2*R/width - R;
+		}
+		mapper = new GridMapper(py, R, VX, VZ, 0, 0, 1);
+
+		//batched kernel and grid mapper must match scalar method
+		double[] gx = new double[width];
+		double[] gy = new double[width];
+		double maxDiff = 0;
+		for(int i=0; i<ROWS; i++) {
+			Arrays.fill(pz, z(i));
+			Transform.anamorphicT(R, VX, VZ, py, pz, x, y, width);
+			mapper.row(z(i), gx, gy, 0);
+			for(int j=0; j<width; j++) {
+				double[] temp = Transform.anamorphicT(R, VX, VZ, py[j], z(i));
+				maxDiff = Math.max(maxDiff, Math.max(Math.abs(temp[0] - x[j]), Math.abs(temp[1] - y[j])));
+				maxDiff = Math.max(maxDiff, Math.max(Math.abs(temp[0] - gx[j]), Math.abs(temp[1] - gy[j])));
+			}
+		}
+		if(maxDiff > 1e-6) {
+			throw new IllegalStateException("kernels differ by " + maxDiff);
+		}
+	}
+
+	@Benchmark
+	public void scalar(Blackhole bh) {
+		double[] temp;
+		for(int i=0; i<ROWS; i++) {
+			double z = z(i);
+			for(int j=0; j<width; j++) {
+				temp = Transform.anamorphicT(R, VX, VZ, py[j], z);
+				x[j] = temp[0];
+				y[j] = temp[1];
+			}
+		}
+		bh.consume(x);
+		bh.consume(y);
+	}
+
+	@Benchmark
+	public void batched(Blackhole bh) {
+		for(int i=0; i<ROWS; i++) {
+			Arrays.fill(pz, z(i));
+			Transform.anamorphicT(R, VX, VZ, py, pz, x, y, width);
+		}
+		bh.consume(x);
+		bh.consume(y);
+	}
+
+	@Benchmark
+	public void separable(Blackhole bh) {
+		for(int i=0; i<ROWS; i++) {
+			mapper.row(z(i), x, y, 0);
+		}
+		bh.consume(x);
+		bh.consume(y);
+	}
+
+	//picture plane height of grid row i (lower half of view height)
+	private static double z(int i) {
+		return i*(VZ/2)/ROWS;
+	}
+}
@@ -0,0 +1,80 @@
+package application;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ *Cylindrical Mirror Anamorphosis
+ *PNG encoding benchmark
+ *
+ *Streams a square test image through PngWriter (adaptive filters, deflate,
+ *pHYs chunk with 600 DPI) in bands of BAND_H rows. Encoded bytes are counted
+ *and dropped, so disk speed is not measured.
+ *
+ * @author  Garrett R. Mackelprang
+ * @version 1.02
+ * @edited  2026.10.17
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PngBenchmark {
+
+	private static final int BAND_H = 64;
+
+	@Param({"1024", "4096"})
+	public int size; //output width and height
+
+	@Param({"false", "true"})
+	public boolean alpha;
+
+	private int[] band;
+
+	@Setup
+	public void setup() {
+		band = BenchData.pixels(size, BAND_H);
+	}
+
+	@Benchmark
+	public long encode() throws IOException {
+		CountingStream out = new CountingStream();
+		PngWriter png = new PngWriter(out, size, size, alpha, 600);
+		for(int y0=0; y0<size; y0+=BAND_H) {
+			png.band(band, y0, size, Math.min(BAND_H, size - y0));
+		}
+		png.close();
+		return out.count;
+	}
+
+	//discards bytes, keeps their count
+	private static class CountingStream extends OutputStream {
+		long count;
+
+		@Override
+		public void write(int b) {
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			count += len;
+		}
+	}
+}
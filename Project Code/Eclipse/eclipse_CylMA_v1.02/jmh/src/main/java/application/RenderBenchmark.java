@@ -0,0 +1,75 @@
+package application;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ *Cylindrical Mirror Anamorphosis
+ *Rasterization benchmark
+ *
+ *Engine setup and rendering of the full output raster for each raster render
+ *mode. Bands go to a blackhole, PNG encoding is measured by PngBenchmark.
+ *The Polygon engine needs the JavaFX toolkit and a snapshot, so it is not
+ *part of the suite.
+ *
+ * @author  Garrett R. Mackelprang
+ * @version 1.02
+ * @edited  2026.10.17
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Djava.awt.headless=true"})
+public class RenderBenchmark {
+
+	@Param({"250", "500", "1000"})
+	public int imgW; //resized input width
+
+	@Param({"scanline-hq", "scanline-lowram", "scanline-aa", "scanline-tiled",
+			"inverse-nearest", "inverse-bilinear", "inverse-bicubic"})
+	public String mode;
+
+	private int[]    imgPixels;
+	private double[] newImgSize;
+
+	@Setup
+	public void setup() {
+		BenchData.options(0, 150);
+		String[] engine = mode.split("-");
+		Transform.renderEngine = engine[0].equals("inverse") ? Transform.INVERSE : Transform.SCANLINE;
+		switch(engine[1]) {
+			case "lowram":   Transform.hqMethod  = false; break;
+			case "aa":       Transform.aaSamples = 4; break;
+			case "tiled":    Transform.tileSize  = 512; break;
+			case "nearest":  Transform.filter    = InverseMapper.NEAREST; break;
+			case "bilinear": Transform.filter    = InverseMapper.BILINEAR; break;
+			case "bicubic":  Transform.filter    = InverseMapper.BICUBIC; break;
+		}
+
+		newImgSize = BenchData.newImgSize(imgW);
+		imgPixels  = BenchData.pixels(imgW, (int)newImgSize[1]);
+	}
+
+	@Benchmark
+	public void render(final Blackhole bh) throws IOException {
+		int[] outSize = new int[2];
+		TileRenderer.TileSource engine = Transform.rasterEngine(imgPixels, newImgSize, outSize);
+		Transform.renderRaster(engine, outSize, (argb, y0, width, height) -> bh.consume(argb));
+	}
+}
@@ -0,0 +1,52 @@
+package application;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ *Cylindrical Mirror Anamorphosis
+ *Image size benchmark
+ *
+ *newImgSize for source images that are kept as they are (500 px) and that
+ *are scaled down (3000 and 6000 px).
+ *
+ * @author  Garrett R. Mackelprang
+ * @version 1.02
+ * @edited  2026.10.17
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SizeBenchmark {
+
+	@Param({"500", "3000", "6000"})
+	public int srcW; //source image width (4:3)
+
+	private double[] imgSize;
+
+	@Setup
+	public void setup() {
+		BenchData.options(0, 600);
+		imgSize = new double[] {srcW, srcW*3/4};
+	}
+
+	@Benchmark
+	public double[] newImgSize() {
+		return Transform.newImgSize(imgSize);
+	}
+}
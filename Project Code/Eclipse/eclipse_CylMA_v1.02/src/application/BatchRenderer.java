@@ -0,0 +1,279 @@
+package application;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ *Cylindrical Mirror Anamorphosis
+ *Batch rendering
+ *
+ *Renders every image of a directory with one parameter set (the Transform
+ *options). Each image goes through three pipeline stages, each on its own
+ *thread, so decoding the next image, rendering the current one and PNG
+ *encoding the previous one overlap:
+ *
+ *   decode (ImageIO, subsampled) -> render (raster engine) -> encode (PngWriter)
+ *
+ *Rendering itself still runs on all worker threads (rows or tiles in
+ *parallel). Memory is capped by the number of jobs in flight: a job takes a
+ *slot before it is decoded and gives it back when its PNG is written. Bands
+ *waiting to be encoded are also bounded, so a slow disk holds back the
+ *render stage instead of filling the heap.
+ *
+ *Each image is planned on its own from the user's engine and tile options
+ *(see RenderPlan) when it is decoded, and the render stage applies the plan
+ *before rendering it. The options are restored when the batch ends.
+ *
+ *Each job has its own RenderReport, passed from stage to stage. Reports of
+ *finished images can be written as JSON lines, one per image.
+ *
+ * @author  Garrett R. Mackelprang
+ * @version 1.02
+ * @edited  2026.10.17
+ */
+
+public class BatchRenderer {
+
+	//rendered bands per job waiting for the encode stage
+	private static final int QUEUED_BANDS = 4;
+
+	//input file extensions (same as GUI file chooser)
+	private static final String[] EXTENSIONS = {".png", ".jpg", ".jpeg", ".gif", ".bmp"};
+
+	//renders images in inputDir to outputDir with at most jobs images in flight,
+	//writes a JSON report line per image to reportFile (if not null), with
+	//planOnly only prints the plan of each image, returns number of images that failed
+	public static int renderDirectory(File inputDir, File outputDir, int jobs, File reportFile,
+			boolean planOnly) throws IOException {
+
+		File[] inputs = inputDir.listFiles(file -> file.isFile() && isImage(file.getName()));
+		if(inputs == null) {
+			throw new IOException("cannot read directory " + inputDir);
+		}
+		Arrays.sort(inputs);
+
+		//user's options, every image is planned from them
+		final int engine = Transform.renderEngine;
+		final int tile   = Transform.tileSize;
+		if(planOnly) {
+			int failed = 0;
+			for(File input : inputs) {
+				try {
+					RenderPlan plan = RenderPlan.plan(Transform.imageSize(input), true, engine, tile);
+					System.err.println(input + System.lineSeparator() + plan);
+				} catch (IOException e) {
+					failed++;
+					System.err.println(input + ": " + e.getMessage());
+				}
+			}
+			return failed;
+		}
+
+		if(!outputDir.isDirectory() && !outputDir.mkdirs()) {
+			throw new IOException("cannot create directory " + outputDir);
+		}
+
+		ExecutorService decoder  = Executors.newSingleThreadExecutor();
+		ExecutorService renderer = Executors.newSingleThreadExecutor();
+		ExecutorService encoder  = Executors.newSingleThreadExecutor();
+		final Semaphore slots    = new Semaphore(Math.max(jobs, 1));
+		final AtomicInteger failed = new AtomicInteger();
+		List<CompletableFuture<Void>> done = new ArrayList<>();
+		final PrintWriter reports = reportFile != null ? new PrintWriter(reportFile, "UTF-8") : null;
+
+		try {
+			for(final File input : inputs) {
+				final File output = new File(outputDir, baseName(input) + " " + Transform.params + ".png");
+				final RenderReport report = new RenderReport(input.getPath());
+
+				slots.acquireUninterruptibly();
+				CompletableFuture<Void> job = CompletableFuture
+						.supplyAsync(() -> decode(input, report, engine, tile), decoder)
+						.thenApplyAsync(decoded -> render(decoded, output, encoder), renderer)
+						.thenCompose(encoded -> encoded)
+						.whenComplete((v, e) -> {
+							slots.release();
+							report.finish();
+							if(e == null && reports != null) {
+								synchronized(reports) {
+									reports.println(report.toJson());
+									reports.flush();
+								}
+							}
+							if(e != null) {
+								failed.incrementAndGet();
+								Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+								if(cause instanceof UncheckedIOException) {
+									cause = cause.getCause();
+								}
+								System.err.println(input + ": " + cause.getMessage());
+							} else {
+								System.out.println(output);
+							}
+						});
+				done.add(job);
+			}
+
+			//wait for last jobs (failures were reported above)
+			for(CompletableFuture<Void> job : done) {
+				job.exceptionally(e -> null).join();
+			}
+		} finally {
+			decoder.shutdown();
+			renderer.shutdown();
+			encoder.shutdown();
+			Transform.renderEngine = engine;
+			Transform.tileSize     = tile;
+			if(reports != null) {
+				reports.close();
+			}
+		}
+
+		return failed.get();
+	}
+
+	//PIPELINE STAGES
+
+	//decoded and resized input image
+	private static class Decoded {
+		final int[]        pixels; //packed ARGB
+		final RenderPlan   plan;   //resized size, engine and tiles
+		final RenderReport report;
+
+		Decoded(int[] pixels, RenderPlan plan, RenderReport report) {
+			this.pixels = pixels;
+			this.plan   = plan;
+			this.report = report;
+		}
+	}
+
+	//decode stage: plans render, reads and resizes input image
+	private static Decoded decode(File input, RenderReport report, int engine, int tile) {
+		report.attach();
+		try {
+			//plan is printed like a single image render (see Headless)
+			RenderPlan plan = RenderPlan.plan(Transform.imageSize(input), true, engine, tile);
+			System.err.println(input + System.lineSeparator() + plan);
+			return new Decoded(Transform.loadPixels(input, plan.newImgSize), plan, report);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			report.detach();
+		}
+	}
+
+	//render stage: renders output bands and queues them for the encode stage,
+	//returns future of encoded file
+	private static CompletableFuture<Void> render(Decoded decoded, File output, ExecutorService encoder) {
+		decoded.report.attach();
+		try {
+			decoded.plan.apply();
+			return render(decoded.pixels, decoded.plan.newImgSize, output, encoder);
+		} finally {
+			decoded.report.detach();
+		}
+	}
+
+	private static CompletableFuture<Void> render(int[] pixels, double[] newImgSize, final File output, ExecutorService encoder) {
+		int[] outSize = new int[2];
+		TileRenderer.TileSource engine = Transform.rasterEngine(pixels, newImgSize, outSize);
+
+		final PngWriter png;
+		try {
+			png = PngWriter.create(output, outSize[0], outSize[1], Transform.alphaOutput(), Transform.dpiT);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		//bands are copied (renderers reuse their buffers) and written in order
+		//by the single encode thread. Every queued band gives its place back,
+		//even after a failed write, so the render stage never waits forever.
+		final Semaphore queued = new Semaphore(QUEUED_BANDS);
+		final List<CompletableFuture<Void>> last = new ArrayList<>();
+		last.add(CompletableFuture.completedFuture(null));
+		boolean rendered = false;
+		try {
+			Transform.renderRaster(engine, outSize, (argb, y0, width, height) -> {
+				//stop rendering as soon as the encoder has failed
+				if(last.get(0).isCompletedExceptionally()) {
+					rethrow(last.get(0).handle((v, e) -> e).join());
+				}
+				final int[] band = Arrays.copyOf(argb, width*height);
+				queued.acquireUninterruptibly();
+				last.set(0, last.get(0).handleAsync((v, e) -> {
+					try {
+						if(e == null) {
+							png.band(band, y0, width, height);
+						}
+					} catch (IOException writeErr) {
+						throw new UncheckedIOException(writeErr);
+					} finally {
+						queued.release();
+					}
+					return rethrow(e);
+				}, encoder));
+			});
+			rendered = true;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			if(!rendered) {
+				//queued bands still use the writer, drop it when they are done
+				last.get(0).handle((v, e) -> null).join();
+				png.discard(output);
+			}
+		}
+
+		//finish file, or drop it when encoding failed
+		return last.get(0).handleAsync((v, e) -> {
+			if(e != null) {
+				png.discard(output);
+				return rethrow(e);
+			}
+			try {
+				png.close();
+			} catch (IOException closeErr) {
+				png.discard(output);
+				throw new UncheckedIOException(closeErr);
+			}
+			return null;
+		}, encoder);
+	}
+
+	//passes failure of an earlier stage on to the next one
+	private static Void rethrow(Throwable e) {
+		if(e == null) {
+			return null;
+		}
+		throw e instanceof CompletionException ? (CompletionException)e : new CompletionException(e);
+	}
+
+	//FILE NAMES
+
+	private static boolean isImage(String name) {
+		String lower = name.toLowerCase();
+		for(String ext : EXTENSIONS) {
+			if(lower.endsWith(ext)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static String baseName(File file) {
+		String name = file.getName();
+		int dot = name.lastIndexOf('.');
+		return dot > 0 ? name.substring(0, dot) : name;
+	}
+}
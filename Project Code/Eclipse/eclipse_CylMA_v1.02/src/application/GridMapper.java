@@ -0,0 +1,155 @@
+package application;
+
+/**
+ *Cylindrical Mirror Anamorphosis
+ *Separable grid mapping
+ *
+ *Maps rows of picture plane grid points to output pixel coordinates using
+ *terms precomputed once per grid column and once per grid row.
+ *
+ *NOTE: With q = vz/(vz - pz), anamorphicT of a picture plane column py is
+ *      a straight line in q:
+ *
+ *          x = A(py) + B(py)*q,  y = C(py) + E(py)*q
+ *
+ *      ts and everything else that depends on py alone goes into A, B, C
+ *      and E (one sqrt per column), q is the only per row term. Offsets and
+ *      scaling to output pixels are folded into the column terms, so each
+ *      grid point costs two multiply-adds.
+ *
+ *NOTE: With vy = 0 the transformation is odd in y: A and B are even in py,
+ *      C and E are odd. Grid columns are symmetric about py = 0 (yzGrid
+ *      centers the picture plane and gives mirrored pixel columns the same
+ *      interpolating points), so only columns with py >= 0 are
+ *      computed and the rest are mirrored. Column j mirrors column
+ *      cols-1-j; with an odd column count the center column (py = 0) is its
+ *      own mirror, with an even count there is no center column.
+ *
+ * @author  Garrett R. Mackelprang
+ * @version 1.02
+ * @edited  2026.10.17
+ */
+
+public class GridMapper {
+
+	private final double   vz;      //viewing height (input pixel units)
+	private final int      cols;    //grid points per row
+	private final int      mid;     //first computed column (py >= 0)
+	private final double   yMirror; //pixel x of column cols-1-j is yMirror - pixel x of column j
+	private final double[] a;       //output pixel line coefficients of columns mid..cols-1:
+	private final double[] b;       //pixel y = a + b*q, pixel x = c + e*q
+	private final double[] c;
+	private final double[] e;
+
+	//py: picture plane y of grid columns (symmetric about 0), r/vx/vz: physical
+	//parameters in input pixel units, minX/minY/s: output offsets and scale
+	public GridMapper(double[] py, double r, double vx, double vz, double minX, double minY, double s) {
+		this.vz   = vz;
+		this.cols = py.length;
+		mid       = cols/2;
+		yMirror   = -2*minY/s;
+
+		a = new double[cols - mid];
+		b = new double[cols - mid];
+		c = new double[cols - mid];
+		e = new double[cols - mid];
+
+		//per column terms, right half only
+		double[] coef = new double[4];
+		for(int j=mid; j<cols; j++) {
+			lineTerms(r, vx, py[j], coef);
+			a[j - mid] = (coef[0] - minX)/s;
+			b[j - mid] = coef[1]/s;
+			c[j - mid] = (coef[2] - minY)/s;
+			e[j - mid] = coef[3]/s;
+		}
+	}
+
+	public int columns() {
+		return cols;
+	}
+
+	//mirror term of the pixel x (Cartesian y) coordinates, see row
+	public double mirrorY() {
+		return yMirror;
+	}
+
+	//writes output pixel coordinates of grid row pz to x[offset..] and y[offset..]
+	//(x is Cartesian x / pixel row, y is Cartesian y / pixel column)
+	public void row(double pz, double[] x, double[] y, int offset) {
+		//per row term
+		final double q = vz/(vz - pz);
+
+		for(int j=mid; j<cols; j++) {
+			double xj = a[j - mid] + b[j - mid]*q;
+			double yj = c[j - mid] + e[j - mid]*q;
+
+			//mirrored column first, so the center column keeps its own value
+			x[offset + cols - 1 - j] = xj;
+			y[offset + cols - 1 - j] = yMirror - yj;
+			x[offset + j] = xj;
+			y[offset + j] = yj;
+		}
+	}
+
+	//writes columns j0..j1 of grid row pz to x[offset + j] and y[offset + j],
+	//same values as row
+	public void points(double pz, int j0, int j1, double[] x, double[] y, int offset) {
+		final double q = vz/(vz - pz);
+
+		for(int j=j0; j<=j1; j++) {
+			int m = j < mid ? cols - 1 - j : j; //computed column
+			double xj = a[m - mid] + b[m - mid]*q;
+			double yj = c[m - mid] + e[m - mid]*q;
+			x[offset + j] = xj;
+			y[offset + j] = j < mid ? yMirror - yj : yj;
+		}
+	}
+
+	//returns a window that holds two grid rows at a time (grid rows pz)
+	public Window window(double[] pz) {
+		return new Window(pz);
+	}
+
+	//line coefficients {A,B,C,E} of picture plane column py
+	//same equations as Transform.anamorphicT, using (vx(1-ts))^2 + (ts*py)^2 = r^2
+	public static void lineTerms(double r, double vx, double py, double[] coef) {
+		double ts = (vx*vx - Math.sqrt(r*r*(py*py + vx*vx) - vx*vx*py*py))/(py*py + vx*vx);
+		double k  = 2*ts*py*py/(r*r);
+		double m  = 2*vx*vx*py*(1 - ts)/(r*r);
+		coef[0] = 2*vx*(1 - ts) + k*ts*vx - vx; //A
+		coef[1] = vx - k*vx;                    //B
+		coef[2] = 2*ts*py - m*ts;               //C
+		coef[3] = m - py;                       //E
+	}
+
+	//GRID WINDOW
+
+	//grid rows i and i+1 of an input pixel row, laid out like rows 0 and 1 of
+	//a full grid (row0: x, row1: y), so grid memory is O(width) instead of
+	//O(width*height). Rows are computed as the renderer moves down the image.
+	public class Window {
+		private final double[]   pz;
+		private final double[][] xy  = new double[2][2*cols];
+		private int              top = -2; //grid row held in first half
+
+		private Window(double[] pz) {
+			this.pz = pz;
+		}
+
+		//loads grid rows i and i+1, reusing row i when moving down one row
+		public double[][] rows(int i) {
+			if(i != top) {
+				if(i == top + 1) {
+					System.arraycopy(xy[0], cols, xy[0], 0, cols);
+					System.arraycopy(xy[1], cols, xy[1], 0, cols);
+				} else {
+					row(pz[i], xy[0], xy[1], 0);
+				}
+				row(pz[i + 1], xy[0], xy[1], cols);
+				top = i;
+			}
+			return xy;
+		}
+	}
+}
@@ -0,0 +1,228 @@
+package application;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import javafx.scene.paint.Color;
+
+/**
+ *Cylindrical Mirror Anamorphosis
+ *Command line code
+ *
+ *Renders an image without the GUI, for machines with no display. Takes the
+ *same parameters and options as the GUI, checks them the same way as
+ *Main.preRunCheck and writes the output PNG directly (no save dialog). The
+ *JavaFX toolkit is never started: the image is decoded with ImageIO and the
+ *Scanline or Inverse engine renders it (the Polygon engine needs the GUI).
+ *Given a directory, every image in it is rendered (see BatchRenderer).
+ *
+ *   java -cp CylMA.jar application.Headless -r 1 -h 3 -vx 10 -vz 10 image.png
+ *   java -cp CylMA.jar application.Headless -r 1 -h 3 -vx 10 -vz 10 -o out images
+ *
+ * @author  Garrett R. Mackelprang
+ * @version 1.02
+ * @edited  2026.10.17
+ */
+
+public class Headless {
+
+	private static final String USAGE =
+		  "usage: application.Headless -r <in> -h <in> -vx <in> -vz <in> [options] <image or directory>\n"
+		+ "  -dpi <dots/in>      printer DPI (default 600)\n"
+		+ "  -n <points>         interpolating points (default 0)\n"
+		+ "  -mesh <px>          adaptive interpolating points, max chord error in output pixels (e.g. 0.25)\n"
+		+ "  -wrap <degrees>     only draw reflections up to this angle around the cylinder (e.g. 75)\n"
+		+ "  -engine <name>      scanline or inverse (default scanline)\n"
+		+ "  -filter <name>      inverse engine sampling: nearest, bilinear or bicubic\n"
+		+ "  -resize <name>      input resize filter: box, area, mitchell or lanczos3 (default area)\n"
+		+ "  -lowram             Low RAM rendering (no polygon outlines)\n"
+		+ "  -nomerge            one polygon per input pixel (no merged runs of equal pixels)\n"
+		+ "  -aa <samples>       scanline anti-aliasing, samples per pixel edge (e.g. 4)\n"
+		+ "  -ignorewhite        do not render WHITE pixels\n"
+		+ "  -tiled              render in 2048 pixel tiles\n"
+		+ "  -threads <count>    max worker threads (default all processors)\n"
+		+ "  -nocylinder         do not show cylinder base\n"
+		+ "  -transparent        preserve transparency (default flattens to WHITE)\n"
+		+ "  -plan               print render estimate and exit\n"
+		+ "  -report <file>      write render phase times as JSON (one line per image)\n"
+		+ "  -jobs <count>       images in flight in directory mode (default 3)\n"
+		+ "  -o <file>           output PNG, or output directory in directory mode\n"
+		+ "                      (default: parameter text next to image)";
+
+	public static void main(String[] args) {
+
+		//no display needed for ImageIO and Java2D
+		System.setProperty("java.awt.headless", "true");
+
+		//parameter values as entered, used for output file name
+		String dpiT  = "600";
+		String r     = "";
+		String h     = "";
+		String vx    = "";
+		String vz    = "";
+		String input = "";
+		String output = null;
+		int    jobs   = 3;
+		boolean planOnly = false;
+		String report = null;
+
+		try {
+			for(int i=0; i<args.length; i++) {
+				switch(args[i]) {
+					case "-r":           r     = value(args, ++i); break;
+					case "-h":           h     = value(args, ++i); break;
+					case "-vx":          vx    = value(args, ++i); break;
+					case "-vz":          vz    = value(args, ++i); break;
+					case "-dpi":         dpiT  = value(args, ++i); break;
+					case "-n":           Transform.n = Integer.parseInt(value(args, ++i)); break;
+					case "-mesh":        Transform.meshTolerance = Double.parseDouble(value(args, ++i)); break;
+					case "-wrap":        Transform.wrapAngle = Double.parseDouble(value(args, ++i)); break;
+					case "-engine":      Transform.renderEngine = engine(value(args, ++i)); break;
+					case "-filter":      Transform.filter = filter(value(args, ++i)); break;
+					case "-resize":      Transform.resizeFilter = resizeFilter(value(args, ++i)); break;
+					case "-lowram":      Transform.hqMethod = false; break;
+					case "-nomerge":     Transform.mergeRuns = false; break;
+					case "-aa":          Transform.aaSamples = Integer.parseInt(value(args, ++i)); break;
+					case "-ignorewhite": Transform.ignoreColor = Color.WHITE; break;
+					case "-tiled":       Transform.tileSize = 2048; break;
+					case "-threads":     Transform.threads = Integer.parseInt(value(args, ++i)); break;
+					case "-nocylinder":  Transform.drawCylinder = false; break;
+					case "-transparent": Transform.backgndColor = Color.TRANSPARENT; break;
+					case "-plan":        planOnly = true; break;
+					case "-report":      report = value(args, ++i); break;
+					case "-jobs":        jobs   = Integer.parseInt(value(args, ++i)); break;
+					case "-o":           output = value(args, ++i); break;
+					default:
+						if(args[i].startsWith("-") || !input.isEmpty()) {
+							throw new IllegalArgumentException("unknown argument " + args[i]);
+						}
+						input = args[i];
+				}
+			}
+		} catch (IllegalArgumentException e) { //includes NumberFormatException
+			fail(e.getMessage());
+		}
+
+		//INPUT VALIDATION (same checks as Main.preRunCheck)
+
+		//one or more input field is empty
+		if(input.trim().isEmpty() || r.trim().isEmpty() || h.trim().isEmpty()
+				|| vx.trim().isEmpty() || vz.trim().isEmpty()) {
+			fail("Please select an image and input all parameters.");
+		}
+
+		try {
+			Transform.dpiT = Double.parseDouble(dpiT);
+			Transform.r    = Math.abs(Double.parseDouble(r));
+			Transform.h    = Math.abs(Double.parseDouble(h));
+			Transform.vx   = Math.abs(Double.parseDouble(vx));
+			Transform.vz   = Math.abs(Double.parseDouble(vz));
+		} catch (NumberFormatException e) {
+			fail("Parameters must be numbers.");
+		}
+		if(Transform.dpiT <= 0 || Transform.n < 0) {
+			fail("DPI must be positive and n must not be negative.");
+		}
+
+		//viewing distance must be increased
+		if(Transform.vx <= Transform.r) {
+			fail("vx must be greater than r.");
+		}
+
+		//viewing height must be increased
+		if(Transform.vz <= Transform.h) {
+			fail("vz must be greater than h.");
+		}
+
+		//RENDER
+
+		File inputFile = new File(input);
+		Transform.params = Transform.paramsText(dpiT, r, h, vx, vz);
+
+		if(inputFile.isDirectory()) {
+			try {
+				File outputDir = output != null ? new File(output) : inputFile;
+				int failed = BatchRenderer.renderDirectory(inputFile, outputDir, jobs,
+						report != null ? new File(report) : null, planOnly);
+				if(failed > 0) {
+					System.err.println(failed + " image(s) failed");
+					System.exit(1);
+				}
+			} catch (IOException e) {
+				System.err.println(e.getMessage());
+				System.exit(1);
+			}
+			return;
+		}
+
+		File outputFile = output != null ? new File(output)
+				: new File(inputFile.getAbsoluteFile().getParentFile(), Transform.params + ".png");
+
+		try {
+			//estimate may switch to tiles to fit the heap
+			RenderPlan plan = RenderPlan.plan(Transform.imageSize(inputFile), true);
+			System.err.println(plan);
+			if(planOnly) {
+				return;
+			}
+			plan.apply();
+			RenderReport phases = RenderReport.start(inputFile.getPath());
+			Transform.renderFile(inputFile, outputFile);
+			if(report != null) {
+				try (PrintWriter json = new PrintWriter(report, "UTF-8")) {
+					json.println(phases.finish().toJson());
+				}
+			}
+		} catch (IOException e) {
+			System.err.println(e.getMessage());
+			System.exit(1);
+		}
+		System.out.println(outputFile);
+	}
+
+	//GET INPUTS
+
+	private static String value(String[] args, int i) {
+		if(i >= args.length) {
+			throw new IllegalArgumentException(args[i-1] + " needs a value");
+		}
+		return args[i];
+	}
+
+	private static int engine(String name) {
+		if(name.equalsIgnoreCase("inverse")) {
+			return Transform.INVERSE;
+		} else if(name.equalsIgnoreCase("scanline")) {
+			return Transform.SCANLINE;
+		}
+		throw new IllegalArgumentException("unknown engine " + name + " (Polygon engine needs the GUI)");
+	}
+
+	private static int filter(String name) {
+		if(name.equalsIgnoreCase("nearest")) {
+			return InverseMapper.NEAREST;
+		} else if(name.equalsIgnoreCase("bilinear")) {
+			return InverseMapper.BILINEAR;
+		} else if(name.equalsIgnoreCase("bicubic")) {
+			return InverseMapper.BICUBIC;
+		}
+		throw new IllegalArgumentException("unknown filter " + name);
+	}
+
+	private static int resizeFilter(String name) {
+		switch(name.toLowerCase()) {
+			case "box":      return Resampler.BOX;
+			case "area":     return Resampler.AREA;
+			case "mitchell": return Resampler.MITCHELL;
+			case "lanczos3": return Resampler.LANCZOS3;
+		}
+		throw new IllegalArgumentException("unknown resize filter " + name);
+	}
+
+	private static void fail(String errTxt) {
+		System.err.println(errTxt);
+		System.err.println(USAGE);
+		System.exit(2);
+	}
+}
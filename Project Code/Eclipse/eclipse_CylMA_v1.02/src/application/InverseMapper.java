@@ -0,0 +1,339 @@
+package application;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ *Cylindrical Mirror Anamorphosis
+ *Inverse mapping render engine
+ *
+ *Walks the output raster and finds the picture plane point (py,pz) that maps
+ *to each output pixel, then samples the input image there. Output has no
+ *polygon seams and render time depends on output size, not on interpolating
+ *points. Output rows are independent and rendered in parallel.
+ *
+ *NOTE: With q = vz/(vz - pz), the anamorphic transformation of a picture
+ *      plane column py is a straight line in q:
+ *
+ *          x = A(py) + B(py)*q,  y = C(py) + E(py)*q
+ *
+ *      so an output row (fixed Cartesian x) crosses each column at a single
+ *      q. Crossings of neighboring columns bracket the output pixels between
+ *      them and py is refined per pixel by regula falsi.
+ *
+ * @author  Garrett R. Mackelprang
+ * @version 1.02
+ * @edited  2026.10.17
+ */
+
+public class InverseMapper {
+
+	//SAMPLING FILTERS
+
+	public static final int NEAREST  = 0;
+	public static final int BILINEAR = 1;
+	public static final int BICUBIC  = 2;
+
+	//column samples per input pixel width
+	private static final int OVERSAMPLE = 2;
+
+	//output rows per parallel task, each task has its own scratch buffers
+	private static final int ROW_BLOCK = 16;
+
+	private final int[]  src;    //input pixels, packed ARGB
+	private final int    srcW;   //input width
+	private final int    srcH;   //input height
+	private final double r;      //physical parameters (input pixel units)
+	private final double vx;
+	private final double vz;
+	private final double minX;   //output offsets
+	private final double minY;
+	private final double s;      //scale to target DPI
+	private final int    filter;
+
+	private final double hOffset; //horizontal offset of picture plane
+	private final double qMax;    //q at top edge of picture plane
+	private final double[] colPy; //sampled picture plane columns
+	private final double[][] colT; //line coefficients {A,B,C,E} of sampled columns
+
+	public InverseMapper(int[] src, int srcW, int srcH, double r, double vx, double vz,
+			double minX, double minY, double s, int filter) {
+		this.src    = src;
+		this.srcW   = srcW;
+		this.srcH   = srcH;
+		this.r      = r;
+		this.vx     = vx;
+		this.vz     = vz;
+		this.minX   = minX;
+		this.minY   = minY;
+		this.s      = s;
+		this.filter = filter;
+
+		hOffset = 0.5*srcW;
+		qMax    = vz/(vz - srcH);
+
+		//precompute line coefficients of sampled columns
+		int cols = srcW*OVERSAMPLE + 1;
+		colPy = new double[cols];
+		colT  = new double[4][cols];
+		double[] coef = new double[4];
+		for(int j=0; j<cols; j++) {
+			colPy[j] = (double)j/OVERSAMPLE - hOffset;
+			columnTerms(colPy[j], coef);
+			for(int k=0; k<4; k++) {
+				colT[k][j] = coef[k];
+			}
+		}
+	}
+
+	//RENDER
+
+	//renders every row of raster (rows run in parallel)
+	public void render(final Rasterizer out, final boolean reportRows) {
+		final AtomicInteger rowsDone = new AtomicInteger();
+		Parallel.forRange(Transform.threads, 0, (out.height + ROW_BLOCK - 1)/ROW_BLOCK, block -> {
+			//buffers of this block, reused for every row and pixel and dropped with it
+			Scratch buf = new Scratch(out.width);
+			for(int row=block*ROW_BLOCK; row<Math.min((block + 1)*ROW_BLOCK, out.height); row++) {
+				Transform.checkCancelled();
+				renderRow(out, row, buf);
+				if(reportRows) {
+					Transform.checkpoint(rowsDone.incrementAndGet(), out.height);
+				}
+			}
+		});
+	}
+
+	private void renderRow(Rasterizer out, int row, Scratch buf) {
+
+		//Cartesian x of output pixel centers in this row
+		double x = minX + s*(out.y0 + row + 0.5);
+
+		//q of picture point drawn at each pixel, smallest q is drawn last by
+		//the polygon engines (bottom of picture plane) and wins overlaps
+		double[] bestQ  = buf.bestQ;
+		double[] bestPy = buf.bestPy;
+		double[] coef   = buf.coef;
+		java.util.Arrays.fill(bestQ, 0, out.width, Double.MAX_VALUE);
+
+		//crossing of output row with first sampled column
+		double qa = (x - colT[0][0])/colT[1][0];
+		double ua = (colT[2][0] + colT[3][0]*qa - minY)/s;
+
+		for(int j=1; j<colPy.length; j++) {
+			double qb = (x - colT[0][j])/colT[1][j];
+			double ub = (colT[2][j] + colT[3][j]*qb - minY)/s;
+
+			if((colT[1][j-1] > 0) == (colT[1][j] > 0)) {
+				fillSpan(out, x, colPy[j-1], qa, ua, colPy[j], qb, ub, bestQ, bestPy, coef);
+			} else {
+				//column turns parallel to the row inside span and its crossing
+				//runs off to infinity, split span at B = 0
+				double pa = colPy[j-1];
+				double pb = colPy[j];
+				for(int it=0; it<60; it++) {
+					double p = 0.5*(pa + pb);
+					columnTerms(p, coef);
+					if((coef[1] > 0) == (colT[1][j-1] > 0)) {
+						pa = p;
+					} else {
+						pb = p;
+					}
+				}
+				//step off the root so crossings stay finite
+				pa -= 1e-7/OVERSAMPLE;
+				pb += 1e-7/OVERSAMPLE;
+				fillSpan(out, x, colPy[j-1], qa, ua, pa, lineQ(x, pa, coef), lineU(x, pa, coef), bestQ, bestPy, coef);
+				fillSpan(out, x, pb, lineQ(x, pb, coef), lineU(x, pb, coef), colPy[j], qb, ub, bestQ, bestPy, coef);
+			}
+			qa = qb;
+			ua = ub;
+		}
+
+		//sample input image at picture plane points
+		int k = row*out.width;
+		for(int col=0; col<out.width; col++) {
+			if(bestQ[col] != Double.MAX_VALUE) {
+				double pz = vz - vz/bestQ[col];
+				int color = sample(bestPy[col] + hOffset, srcH - pz, buf);
+				if(color>>>24 == 0xff) {
+					out.argb[k + col] = color;
+				} else if(color>>>24 != 0) {
+					out.argb[k + col] = Rasterizer.blend(out.argb[k + col], color);
+				}
+			}
+		}
+	}
+
+	//finds picture plane points of pixel centers between crossings of columns pa and pb
+	private void fillSpan(Rasterizer out, double x, double pa, double qa, double ua,
+			double pb, double qb, double ub, double[] bestQ, double[] bestPy, double[] coef) {
+
+		//skip spans outside picture plane
+		if(Double.isNaN(ua) || Double.isNaN(ub) || (qa < 1 && qb < 1) || (qa > qMax && qb > qMax)) {
+			return;
+		}
+
+		double uL = Math.min(ua, ub) - out.x0;
+		double uR = Math.max(ua, ub) - out.x0;
+		int start = (int)Math.max(Math.ceil(uL - 0.5), 0);
+		int stop  = (int)Math.min(Math.ceil(uR - 0.5), out.width);
+		for(int col=start; col<stop; col++) {
+			double py = solvePy(x, col + 0.5 + out.x0, pa, ua, pb, ub, coef);
+			double q  = lineQ(x, py, coef);
+			if(q >= 1 && q <= qMax && q <= bestQ[col]) {
+				bestQ[col]  = q;
+				bestPy[col] = py;
+			}
+		}
+	}
+
+	//INVERSE TRANSFORMATION
+
+	//finds column py in [pa,pb] whose line crosses Cartesian x at output pixel u
+	private double solvePy(double x, double u, double pa, double ua, double pb, double ub, double[] coef) {
+		double ga = ua - u;
+		double gb = ub - u;
+		if(ga == gb) {
+			return pa;
+		}
+		//regula falsi (Illinois variant), bracket always contains the crossing
+		int side = 0;
+		double p = pa;
+		for(int it=0; it<60; it++) {
+			p = (pa*gb - pb*ga)/(gb - ga);
+			double g = lineU(x, p, coef) - u;
+			if(Math.abs(g) < 1e-4 || Double.isNaN(g)) {
+				break;
+			}
+			if((g > 0) == (gb > 0)) {
+				pb = p;
+				gb = g;
+				if(side == -1) {
+					ga *= 0.5;
+				}
+				side = -1;
+			} else {
+				pa = p;
+				ga = g;
+				if(side == 1) {
+					gb *= 0.5;
+				}
+				side = 1;
+			}
+		}
+		return p;
+	}
+
+	//q where column py crosses Cartesian x
+	private double lineQ(double x, double py, double[] coef) {
+		columnTerms(py, coef);
+		return (x - coef[0])/coef[1];
+	}
+
+	//output pixel u where column py crosses Cartesian x
+	private double lineU(double x, double py, double[] coef) {
+		columnTerms(py, coef);
+		double q = (x - coef[0])/coef[1];
+		return (coef[2] + coef[3]*q - minY)/s;
+	}
+
+	//line coefficients {A,B,C,E} of picture plane column py
+	private void columnTerms(double py, double[] coef) {
+		GridMapper.lineTerms(r, vx, py, coef);
+	}
+
+	//SAMPLING
+
+	//samples input at continuous pixel coordinates (pixel (i,j) covers [j,j+1)x[i,i+1))
+	private int sample(double sx, double sy, Scratch buf) {
+		if(filter == NEAREST) {
+			return pixel((int)Math.floor(sx), (int)Math.floor(sy));
+		}
+
+		//weights are applied to premultiplied colors
+		double fx = sx - 0.5;
+		double fy = sy - 0.5;
+		int ix = (int)Math.floor(fx);
+		int iy = (int)Math.floor(fy);
+		fx -= ix;
+		fy -= iy;
+
+		double a = 0, rd = 0, g = 0, b = 0;
+		double[] wx = buf.wx;
+		double[] wy = buf.wy;
+		if(filter == BILINEAR) {
+			wx[0] = 1 - fx;
+			wx[1] = fx;
+			wy[0] = 1 - fy;
+			wy[1] = fy;
+			for(int m=0; m<2; m++) {
+				for(int l=0; l<2; l++) {
+					int c = pixel(ix + l, iy + m);
+					double w  = wx[l]*wy[m];
+					double ca = (c>>>24)*w;
+					a  += ca;
+					rd += ((c>>16) & 0xff)*ca;
+					g  += ((c>>8)  & 0xff)*ca;
+					b  += ( c      & 0xff)*ca;
+				}
+			}
+		} else { //BICUBIC
+			cubicWeights(fx, wx);
+			cubicWeights(fy, wy);
+			for(int m=0; m<4; m++) {
+				for(int l=0; l<4; l++) {
+					int c = pixel(ix + l - 1, iy + m - 1);
+					double w  = wx[l]*wy[m];
+					double ca = (c>>>24)*w;
+					a  += ca;
+					rd += ((c>>16) & 0xff)*ca;
+					g  += ((c>>8)  & 0xff)*ca;
+					b  += ( c      & 0xff)*ca;
+				}
+			}
+		}
+
+		if(a < 0.5) {
+			return 0;
+		}
+		return clamp(a)<<24 | clamp(rd/a)<<16 | clamp(g/a)<<8 | clamp(b/a);
+	}
+
+	//Catmull-Rom weights for taps at -1, 0, 1, 2 into w
+	private static void cubicWeights(double t, double[] w) {
+		double t2 = t*t;
+		double t3 = t2*t;
+		w[0] = 0.5*(-t3 + 2*t2 - t);
+		w[1] = 0.5*(3*t3 - 5*t2 + 2);
+		w[2] = 0.5*(-3*t3 + 4*t2 + t);
+		w[3] = 0.5*(t3 - t2);
+	}
+
+	//input pixel, clamped to image edges
+	private int pixel(int col, int row) {
+		col = Math.min(Math.max(col, 0), srcW - 1);
+		row = Math.min(Math.max(row, 0), srcH - 1);
+		return src[row*srcW + col];
+	}
+
+	private static int clamp(double c) {
+		return (int)Math.min(Math.max(Math.round(c), 0), 255);
+	}
+
+	//SCRATCH
+
+	//buffers of a block of rows: best picture point of each pixel of a row,
+	//column terms and filter weights
+	private static class Scratch {
+		final double[] bestQ;
+		final double[] bestPy;
+		final double[] coef = new double[4];
+		final double[] wx   = new double[4];
+		final double[] wy   = new double[4];
+
+		Scratch(int width) {
+			bestQ  = new double[width];
+			bestPy = new double[width];
+		}
+	}
+}
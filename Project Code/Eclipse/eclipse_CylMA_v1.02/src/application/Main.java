@@ -3,8 +3,10 @@ package application;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.concurrent.CancellationException;
 
 import javafx.application.Application;
+import javafx.concurrent.Task;
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
 import javafx.geometry.Insets;
@@ -13,6 +15,7 @@ import javafx.scene.Scene;
 import javafx.scene.control.Button;
 import javafx.scene.control.ChoiceBox;
 import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
 import javafx.scene.control.RadioButton;
 import javafx.scene.control.TextField;
 import javafx.scene.control.ToggleGroup;
@@ -25,6 +28,7 @@ import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 import javafx.scene.text.Text;
 import javafx.stage.FileChooser;
+import javafx.stage.Modality;
 import javafx.stage.Stage;
 
 /**
@@ -39,15 +43,35 @@ import javafx.stage.Stage;
  *
  *3) Fixed custom font not loading for jar file
  *
+ *4) Added render engine selector (Scanline, Inverse or Polygon) and
+ *   Tiled rendering option.
+ *
+ *5) Output file name text is built by Transform.paramsText, shared with the
+ *   Headless command line.
+ *
+ *6) Added AA rendering option (anti-aliased Scanline engine).
+ *
+ *7) Render estimate (size, memory, time) is shown before rendering.
+ *
+ *8) Renders run in the background with a progress window and Cancel button,
+ *   the program stays open for the next render.
+ *
+ *9) Added live preview below the inputs, re-rendered as parameters and
+ *   output options change (see Preview).
+ *
  * @author Garrett R. Mackelprang
  * @version 1.02
- * @edited  2019.02.16
+ * @edited  2026.10.17
  */
 
 public class Main extends Application {
 	
 	private static String inputImg = ""; //image file location
 	
+	private Button transformB = new Button("Transform");
+	
+	private Preview preview = new Preview(386,240); //live output preview
+	
 	//TEXT FIELDS, CHOICE BOXES, & RADIO BUTTONS
 	
     private TextField cylinderRF = new TextField();
@@ -57,9 +81,12 @@ public class Main extends Application {
     
     private ChoiceBox<String> dpiTF = new ChoiceBox<>(); //target DPI selector
     private ChoiceBox<String> intPF = new ChoiceBox<>(); //interpolating pts selector
+    private ChoiceBox<String> engnF = new ChoiceBox<>(); //render engine selector
     
     private RadioButton renderOpt2RB = new RadioButton("Low RAM");
+    private RadioButton renderOpt5RB = new RadioButton("AA");
     private RadioButton renderOpt3RB = new RadioButton("Ignore WHITE");
+    private RadioButton renderOpt4RB = new RadioButton("Tiled");
     private RadioButton outputOpt1RB = new RadioButton("Show Cylinder Base");
     private RadioButton outputOpt3RB = new RadioButton("Preserve Transparency");
     
@@ -79,9 +106,21 @@ public class Main extends Application {
 		mainWindow.setRight(options);
 		
 		HBox bottomBar = addBottomBar();
-		mainWindow.setBottom(bottomBar);
+		VBox bottom = new VBox();
+		bottom.setPadding(new Insets(7,0,0,0));
+		bottom.getChildren().addAll(preview.pane(), bottomBar);
+		mainWindow.setBottom(bottom);
+		
+		//re-render preview when parameters or output options change
+		cylinderRF.textProperty().addListener((obs, old, txt) -> updatePreview());
+		cylinderHF.textProperty().addListener((obs, old, txt) -> updatePreview());
+		viewDF.textProperty().addListener((obs, old, txt) -> updatePreview());
+		viewHF.textProperty().addListener((obs, old, txt) -> updatePreview());
+		renderOpt3RB.selectedProperty().addListener((obs, old, sel) -> updatePreview());
+		outputOpt1RB.selectedProperty().addListener((obs, old, sel) -> updatePreview());
+		outputOpt3RB.selectedProperty().addListener((obs, old, sel) -> updatePreview());
 
-		primaryStage.setScene(new Scene(mainWindow,400,225));
+		primaryStage.setScene(new Scene(mainWindow,400,472));
 		primaryStage.setResizable(false);
 		primaryStage.setTitle("Cylindrical Mirror Anamorphosis");
 		primaryStage.show();
@@ -96,8 +135,7 @@ public class Main extends Application {
 	    bottomBar.setPadding(new Insets(7,0,0,0));
 	    bottomBar.setSpacing(7);
 	    
-		Button transformB = new Button("Transform");
-		Button aboutB     = new Button("About");
+		Button aboutB = new Button("About");
 	    
 	    //resize bottom bar buttons
 		transformB.setPrefSize(85,20);
@@ -145,6 +183,108 @@ public class Main extends Application {
 		return error;
 	}
 	
+	//shows render estimate, returns true to render
+	static boolean confirmPlan(String planTxt) {
+		
+		Stage planStage = new Stage();
+		planStage.initModality(Modality.APPLICATION_MODAL);
+		planStage.setTitle("Render Estimate");
+		final boolean[] render = {false};
+		
+		VBox plan = new VBox();
+		plan.setStyle("-fx-background-color: WHITE");
+		plan.setPadding(new Insets(7,7,7,7));
+		plan.setSpacing(7);
+		plan.setAlignment(Pos.CENTER);
+		
+	    Label line0 = new Label(planTxt);
+	    line0.setFont(Font.font("Calibri Light",15));
+	    line0.setWrapText(true);
+	    
+	    Button renderB = new Button("Render");
+	    Button cancelB = new Button("Cancel");
+	    renderB.setDefaultButton(true);
+	    cancelB.setCancelButton(true);
+	    renderB.setOnAction(e -> {
+	    	render[0] = true;
+	    	planStage.close();
+	    });
+	    cancelB.setOnAction(e -> planStage.close());
+	    
+	    HBox buttons = new HBox(10, renderB, cancelB);
+	    buttons.setAlignment(Pos.CENTER);
+	    plan.getChildren().addAll(line0, buttons);
+	    
+		planStage.setScene(new Scene(plan));
+		planStage.showAndWait();
+		return render[0];
+	}
+	
+	//runs render in the background and shows its progress
+	private void runRender(final Task<Void> render) {
+		
+		Stage progressStage = new Stage();
+		progressStage.setTitle("Rendering");
+		progressStage.setOnCloseRequest(e -> render.cancel());
+		
+		VBox progress = new VBox();
+		progress.setStyle("-fx-background-color: WHITE");
+		progress.setPadding(new Insets(7,7,7,7));
+		progress.setSpacing(7);
+		progress.setAlignment(Pos.CENTER);
+		
+	    Label line0 = new Label();
+	    line0.setFont(Font.font("Calibri Light",15));
+	    line0.textProperty().bind(render.messageProperty());
+	    
+	    ProgressBar bar = new ProgressBar();
+	    bar.setPrefWidth(300);
+	    bar.progressProperty().bind(render.progressProperty());
+	    
+	    Button cancelB = new Button("Cancel");
+	    cancelB.setCancelButton(true);
+	    cancelB.setOnAction(e -> render.cancel());
+	    progress.getChildren().addAll(line0, bar, cancelB);
+	    
+		progressStage.setScene(new Scene(progress));
+		progressStage.show();
+		
+		//one render at a time
+		transformB.setDisable(true);
+		render.setOnSucceeded(e -> {
+			progressStage.close();
+			transformB.setDisable(false);
+			preview.resume();
+		});
+		render.setOnCancelled(e -> {
+			progressStage.close();
+			transformB.setDisable(false);
+			preview.resume();
+		});
+		render.setOnFailed(e -> {
+			progressStage.close();
+			transformB.setDisable(false);
+			preview.resume();
+			Throwable err = render.getException();
+			if(err instanceof CancellationException) {
+				return;
+			}
+            Stage secondaryStage = new Stage();
+            String errTxt = err instanceof OutOfMemoryError
+            		? "Out of memory, try Tiled or Low RAM rendering or increase -Xmx."
+            		: "Render failed: " + err.getMessage();
+            VBox error = addError(errTxt);
+			Scene secondScene = new Scene(error,314,39);
+			secondaryStage.setScene(secondScene);
+			secondaryStage.setTitle("Render Failed");
+            secondaryStage.show();
+		});
+		
+		Thread worker = new Thread(render, "render");
+		worker.setDaemon(true);
+		worker.start();
+	}
+	
 	//create about message
 	private static VBox addAbout() {
 		
@@ -207,6 +347,7 @@ public class Main extends Application {
 	    Label dpiL1       = new Label("Printer DPI");
 	    Label dpiL2       = new Label(" dots/in");
 	    Label intPL1      = new Label("Interpolating Pts");
+	    Label engnL1      = new Label("Render Engine");
 	    Label cylinderRL1 = new Label("Cylinder Radius r");
 	    Label cylinderRL2 = new Label(" in");
 	    Label cylinderHL1 = new Label("Cylinder Height h");
@@ -219,13 +360,17 @@ public class Main extends Application {
 	    dpiTF.getItems().addAll("600", "360", "300", "150");
 	    dpiTF.setValue("600");
 	    
-	    intPF.getItems().addAll("0", "3", "5", "7", "9", "11", "13");
+	    intPF.getItems().addAll("0", "Auto", "3", "5", "7", "9", "11", "13");
 	    intPF.setValue("0");
 	    
+	    engnF.getItems().addAll("Scanline", "Inverse", "Polygon");
+	    engnF.setValue("Scanline");
+	    
 	    Button imageB = new Button("File");
 	    imageB.setPrefSize(60, 20);
 	    dpiTF.setPrefSize(60, 20);
 	    intPF.setPrefSize(60, 20);
+	    engnF.setPrefSize(60, 20);
 	    
 	    inputs.add(imageL1,0,0); 		inputs.add(imageB,1,0);			
 	    inputs.add(dpiL1,0,1); 			inputs.add(dpiTF,1,1); 			inputs.add(dpiL2,2,1);
@@ -233,6 +378,7 @@ public class Main extends Application {
 	    inputs.add(cylinderHL1,0,3);	inputs.add(cylinderHF,1,3); 	inputs.add(cylinderHL2,2,3);
 	    inputs.add(viewDL1,0,4); 		inputs.add(viewDF,1,4); 		inputs.add(viewDL2,2,4);
 		inputs.add(viewHL1,0,5); 		inputs.add(viewHF,1,5); 		inputs.add(viewHL2,2,5);
+	    inputs.add(engnL1,0,6);			inputs.add(engnF,1,6);
 	    inputs.add(intPL1,0,7);			inputs.add(intPF,1,7);
 		
 		//select input image
@@ -246,6 +392,7 @@ public class Main extends Application {
 				File selectedImage = selectImage.showOpenDialog(new Stage());
 				if(selectedImage != null) {
 					inputImg = selectedImage.toURI().toString();
+					preview.setImage(inputImg);
 				}
 			}
 		});
@@ -271,6 +418,7 @@ public class Main extends Application {
 	    final ToggleGroup setRenderOpt = new ToggleGroup();
 	    renderOpt1RB.setToggleGroup(setRenderOpt);
 	    renderOpt2RB.setToggleGroup(setRenderOpt);
+	    renderOpt5RB.setToggleGroup(setRenderOpt);
 	    renderOpt1RB.setSelected(true);
 	    
 	    HBox renderOptLabel = new HBox();
@@ -295,11 +443,17 @@ public class Main extends Application {
 	    renderOpt12.setHgap(10);
 	    renderOpt12.add(renderOpt1RB,0,0);
 	    renderOpt12.add(renderOpt2RB,1,0);
+	    renderOpt12.add(renderOpt5RB,2,0);
+	    
+	    GridPane renderOpt34 = new GridPane();
+	    renderOpt34.setHgap(10);
+	    renderOpt34.add(renderOpt3RB,0,0);
+	    renderOpt34.add(renderOpt4RB,1,0);
 	    
 	    options.getChildren().addAll(
 	    		renderOptLabel,
 	    		renderOpt12,
-	    		renderOpt3RB,
+	    		renderOpt34,
 	    		outputOptLabel,
 	    		outputOpt1RB,
 	    		outputOpt2RB,
@@ -354,11 +508,42 @@ public class Main extends Application {
 		
 		//everything okay: perform transformation
 		else {
+			//preview shares Transform options, no preview frames while rendering
+			preview.pause();
 			setOptions();
-			Transform.startTransformation(inputImg);
+			try {
+				Task<Void> render = Transform.startTransformation(inputImg);
+				if(render != null) {
+					runRender(render);
+				} else {
+					preview.resume();
+				}
+			} catch (IOException e) {
+				preview.resume();
+	            Stage secondaryStage = new Stage();
+	            VBox error = addError("Cannot read image: " + e.getMessage());
+				Scene secondScene = new Scene(error,314,39);
+				secondaryStage.setScene(secondScene);
+				secondaryStage.setTitle("Render Failed");
+	            secondaryStage.show();
+			}
 		}
 	}
 	
+	//passes valid parameters to preview (same checks as preRunCheck)
+	private void updatePreview() {
+		double[] geometry;
+		try {
+			geometry = new double[] {getR(), getH(), getVx(), getVz()};
+		} catch (NumberFormatException e) {
+			geometry = null;
+		}
+		if(geometry != null && (geometry[2] <= geometry[0] || geometry[3] <= geometry[1] || geometry[0] <= 0 || geometry[1] <= 0)) {
+			geometry = null;
+		}
+		preview.update(geometry, outputOpt1RB.isSelected(), outputOpt3RB.isSelected(), renderOpt3RB.isSelected());
+	}
+	
 	//SET RENDERING AND OUTPUT OPTIONS
 	
 	private void setOptions() {
@@ -371,43 +556,43 @@ public class Main extends Application {
 		Transform.vz   = getVz();   //viewing height
 		Transform.n    = getN();    //interpolating points
 		
-		//output image parameters text
-		Transform.params = dpiTF.getValue() + ","
-				+ cylinderRF.getText()      + ","
-				+ cylinderHF.getText()      + ","
-				+ viewDF.getText()          + ","
-				+ viewHF.getText();
-		
-		if(Transform.n!=0) {
-			Transform.params += " " + Transform.n + "n";
-		}
+		//Auto adds points only where pixel edges curve, within a quarter output pixel
+		Transform.meshTolerance = intPF.getValue().equals("Auto") ? 0.25 : 0;
+		
+		//set render engine
+		Transform.renderEngine = getEngine();
+		
+		//options are set every time, program stays open between renders
 		
 		//set Low RAM rendering option
-        if(renderOpt2RB.isSelected()) {
-        	Transform.hqMethod = false;
-        	Transform.params += " LoRAM";
+        Transform.hqMethod = !renderOpt2RB.isSelected();
+        
+        //set anti-aliased rendering option (Scanline engine, 4 x 4 samples)
+        if(renderOpt5RB.isSelected() && Transform.renderEngine == Transform.SCANLINE) {
+        	Transform.aaSamples = 4;
         } else {
-        	Transform.params += " HQ";
+        	Transform.aaSamples = 0;
         }
         
         //set ignore WHITE rendering option
-        if(renderOpt3RB.isSelected()) {
-        	Transform.ignoreColor = Color.WHITE;
-        	Transform.params += " IgnWht";
-        }
+        Transform.ignoreColor = renderOpt3RB.isSelected() ? Color.WHITE : null;
         
-        //don't show cylinder base in output image
-        if(!outputOpt1RB.isSelected()) {
-        	Transform.drawCylinder = false;
+        //set tiled rendering option (Scanline and Inverse engines)
+        if(renderOpt4RB.isSelected()) {
+        	Transform.tileSize = 2048;
         } else {
-        	Transform.params += " DrwCyl";
+        	Transform.tileSize = 0;
         }
         
+        //show cylinder base in output image
+        Transform.drawCylinder = outputOpt1RB.isSelected();
+        
         //set output image background color to TRANSPARENT
-        if(outputOpt3RB.isSelected()) {
-        	Transform.backgndColor = Color.TRANSPARENT;
-        	Transform.params += " PresTrans";
-        }
+        Transform.backgndColor = outputOpt3RB.isSelected() ? Color.TRANSPARENT : null;
+        
+		//output image parameters text
+		Transform.params = Transform.paramsText(dpiTF.getValue(), cylinderRF.getText(),
+				cylinderHF.getText(), viewDF.getText(), viewHF.getText());
 	}
     
     //GET INPUTS
@@ -433,9 +618,21 @@ public class Main extends Application {
     }
     
     private int getN() {
+    	if(intPF.getValue().equals("Auto")) {
+    		return 0;
+    	}
     	return Integer.parseInt(intPF.getValue());
     }
     
+    private int getEngine() {
+    	if(engnF.getValue().equals("Polygon")) {
+    		return Transform.SCENE_GRAPH;
+    	} else if(engnF.getValue().equals("Inverse")) {
+    		return Transform.INVERSE;
+    	}
+    	return Transform.SCANLINE;
+    }
+    
 	public static void main(String[] args) {
 		launch(args);
 	}
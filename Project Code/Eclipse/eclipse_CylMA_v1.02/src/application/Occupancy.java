@@ -0,0 +1,164 @@
+package application;
+
+/**
+ *Cylindrical Mirror Anamorphosis
+ *Source occupancy index
+ *
+ *Coarse map of the resized input image in BLOCK x BLOCK pixel blocks, each
+ *EMPTY (every pixel transparent), UNIFORM (every pixel the same visible
+ *color) or MIXED. It is built once before drawing, so the render loops jump
+ *over empty blocks without reading their pixels, skip grid rows that no
+ *visible pixel uses, and extend runs across uniform blocks without comparing
+ *pixels. The Scanline engine marks uniform blocks it fills as one polygon
+ *WHOLE (see Transform.wholeBlocks), runs skip them and stop before them.
+ *
+ *NOTE: The ignored color (Ignore WHITE) is made transparent when the input
+ *      is decoded (Transform.maskIgnored), so ignored areas are EMPTY too.
+ *
+ * @author  Garrett R. Mackelprang
+ * @version 1.02
+ * @edited  2026.10.17
+ */
+
+public class Occupancy {
+
+	//block edge in input pixels
+	public static final int BLOCK = 32;
+
+	//BLOCK STATES
+
+	public static final byte EMPTY   = 0;
+	public static final byte UNIFORM = 1;
+	public static final byte MIXED   = 2;
+	public static final byte WHOLE   = 3; //uniform, filled as one polygon
+
+	private final int[]     pixels;   //packed ARGB input pixels, row major
+	private final int       imgW;
+	private final int       imgH;
+	private final int       blocksW;  //blocks per block row
+	private final byte[]    state;    //state of each block, row major
+	private final int[]     color;    //color of uniform blocks
+	private final boolean[] rowEmpty; //every block of block row is empty
+
+	//classifies blocks of input pixels, block rows in parallel
+	public Occupancy(final int[] imgPixels, final int imgW, final int imgH) {
+		this.pixels = imgPixels;
+		this.imgW   = imgW;
+		this.imgH   = imgH;
+		blocksW     = (imgW + BLOCK - 1)/BLOCK;
+		int blocksH = (imgH + BLOCK - 1)/BLOCK;
+		state       = new byte[blocksW*blocksH];
+		color       = new int[blocksW*blocksH];
+		rowEmpty    = new boolean[blocksH];
+		Parallel.forRange(Transform.threads, 0, blocksH, this::classify);
+	}
+
+	private void classify(int by) {
+		int y0 = by*BLOCK;
+		int y1 = Math.min(y0 + BLOCK, imgH);
+		boolean empty = true;
+		for(int bx=0; bx<blocksW; bx++) {
+			int x0 = bx*BLOCK;
+			int x1 = Math.min(x0 + BLOCK, imgW);
+			int first = pixels[y0*imgW + x0];
+			int alpha = 0; //alpha bits of any pixel
+			int diff  = 0; //bits of any pixel that differ from first
+			for(int y=y0; y<y1 && (alpha>>>24 == 0 || diff == 0); y++) {
+				for(int k=y*imgW + x0; k<y*imgW + x1; k++) {
+					alpha |= pixels[k];
+					diff  |= pixels[k] ^ first;
+				}
+			}
+			boolean transparent = alpha>>>24 == 0;
+			boolean uniform     = diff == 0 && !transparent;
+			int b = by*blocksW + bx;
+			state[b] = transparent ? EMPTY : uniform ? UNIFORM : MIXED;
+			color[b] = uniform ? first : 0;
+			empty   &= transparent;
+		}
+		rowEmpty[by] = empty;
+	}
+
+	//state of block holding input pixel (i,j)
+	public byte state(int i, int j) {
+		return state[(i/BLOCK)*blocksW + j/BLOCK];
+	}
+
+	//block count across and down
+	public int blocksW() {
+		return blocksW;
+	}
+
+	public int blocksH() {
+		return rowEmpty.length;
+	}
+
+	//state of block (by,bx)
+	public byte block(int by, int bx) {
+		return state[by*blocksW + bx];
+	}
+
+	//color of uniform block (by,bx)
+	public int color(int by, int bx) {
+		return color[by*blocksW + bx];
+	}
+
+	//marks uniform block (by,bx) as filled as one polygon
+	public void fillWhole(int by, int bx) {
+		if(state[by*blocksW + bx] == UNIFORM) {
+			state[by*blocksW + bx] = WHOLE;
+		}
+	}
+
+	//true if no pixel of row i can be visible
+	public boolean rowEmpty(int i) {
+		return rowEmpty[i/BLOCK];
+	}
+
+	//true if grid row i (top of pixel row i, bottom of row i-1) is used by a visible pixel
+	public boolean gridRowUsed(int i) {
+		return i < imgH && !rowEmpty(i) || i > 0 && !rowEmpty(i - 1);
+	}
+
+	//first visible pixel of row i at or after column j that is not in a WHOLE
+	//block, imgW if none
+	public int nextVisible(int i, int j) {
+		int row   = i*imgW;
+		int first = (i/BLOCK)*blocksW;
+		while(j < imgW) {
+			byte s = state[first + j/BLOCK];
+			if(s == UNIFORM) {
+				return j;
+			} else if(s == EMPTY || s == WHOLE) {
+				j = (j/BLOCK + 1)*BLOCK;
+			} else if(pixels[row + j]>>>24 != 0) {
+				return j;
+			} else {
+				j++;
+			}
+		}
+		return imgW;
+	}
+
+	//first column of row i in [j, max) that is in a WHOLE block, max if none
+	public int nextWhole(int i, int j, int max) {
+		int first = (i/BLOCK)*blocksW;
+		for(int bx=j/BLOCK; bx*BLOCK < max; bx++) {
+			if(state[first + bx] == WHOLE) {
+				return Math.max(bx*BLOCK, j);
+			}
+		}
+		return max;
+	}
+
+	//end (exclusive) of the pixels of row i from column j on that are known to
+	//be argb without reading them (uniform blocks of that color), at least j
+	public int uniformEnd(int i, int j, int argb) {
+		int first = (i/BLOCK)*blocksW;
+		int bx    = j/BLOCK;
+		while(bx < blocksW && state[first + bx] == UNIFORM && color[first + bx] == argb) {
+			bx++;
+		}
+		return Math.max(Math.min(bx*BLOCK, imgW), j);
+	}
+}
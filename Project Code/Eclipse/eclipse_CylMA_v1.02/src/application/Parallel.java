@@ -0,0 +1,48 @@
+package application;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ *Cylindrical Mirror Anamorphosis
+ *Parallel loops
+ *
+ *Runs independent loop iterations (grid row blocks, output rows, tiles) on a
+ *fork-join pool. With a thread cap the work runs on a private pool of that
+ *size, otherwise on the common pool (all available processors).
+ *
+ * @author  Garrett R. Mackelprang
+ * @version 1.02
+ * @edited  2026.10.17
+ */
+
+public class Parallel {
+
+	private static ForkJoinPool pool;        //pool for current thread cap
+	private static int          poolThreads; //size of pool
+
+	//runs body(i) for start <= i < stop on up to threads workers (0 = all processors)
+	public static void forRange(int threads, int start, int stop, final IntConsumer body) {
+		final IntStream range = IntStream.range(start, stop).parallel();
+		if(threads <= 0 || threads >= Runtime.getRuntime().availableProcessors()) {
+			range.forEach(body);
+		} else if(threads == 1) {
+			IntStream.range(start, stop).forEach(body);
+		} else {
+			//parallel stream started from a pool task runs in that pool
+			pool(threads).submit(() -> range.forEach(body)).join();
+		}
+	}
+
+	private static synchronized ForkJoinPool pool(int threads) {
+		if(pool == null || poolThreads != threads) {
+			if(pool != null) {
+				pool.shutdown();
+			}
+			pool        = new ForkJoinPool(threads);
+			poolThreads = threads;
+		}
+		return pool;
+	}
+}
@@ -0,0 +1,274 @@
+package application;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ *Cylindrical Mirror Anamorphosis
+ *Streaming PNG encoder
+ *
+ *Writes an 8 bit RGB or RGBA PNG one band of rows at a time, deflating rows
+ *as they arrive, so the full output image never has to be held in memory.
+ *Target DPI is stored in the pHYs chunk (pixels per meter).
+ *
+ *Rows must be written top to bottom. Each row uses the PNG filter with the
+ *smallest sum of absolute differences (the usual adaptive heuristic).
+ *
+ * @author  Garrett R. Mackelprang
+ * @version 1.02
+ * @edited  2026.10.17
+ */
+
+public class PngWriter implements TileRenderer.BandSink, Closeable {
+
+	private static final byte[] SIGNATURE = {(byte)0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+	private static final int    IDAT_SIZE = 1<<16; //max bytes per IDAT chunk
+
+	private final DataOutputStream    out;
+	private final DeflaterOutputStream idat;
+	private final Deflater deflater;
+	private final int      width;
+	private final int      height;
+	private final int      bpp;         //bytes per pixel
+	private int            rowsWritten;
+	private final RenderReport report; //report of render creating the writer
+
+	//current and previous unfiltered rows, filter candidates
+	private byte[]   prevRow;
+	private byte[]   curRow;
+	private byte[][] filtered = new byte[5][];
+
+	//writer of new file, file is closed and deleted again if the header cannot be written
+	public static PngWriter create(File file, int width, int height, boolean alpha, double dpi) throws IOException {
+		OutputStream os = new FileOutputStream(file);
+		try {
+			return new PngWriter(os, width, height, alpha, dpi);
+		} catch (IOException | RuntimeException e) {
+			os.close();
+			file.delete();
+			throw e;
+		}
+	}
+	
+	public PngWriter(OutputStream os, int width, int height, boolean alpha, double dpi) throws IOException {
+		this.width  = width;
+		this.height = height;
+		this.bpp    = alpha ? 4 : 3;
+		report      = RenderReport.current();
+		if(report != null) {
+			report.outputSize(width, height);
+		}
+
+		prevRow = new byte[width*bpp];
+		curRow  = new byte[width*bpp];
+		for(int f=0; f<5; f++) {
+			filtered[f] = new byte[width*bpp];
+		}
+
+		out = new DataOutputStream(new BufferedOutputStream(os, IDAT_SIZE));
+		out.write(SIGNATURE);
+
+		//image header: size, bit depth 8, color type 6 (RGBA) or 2 (RGB)
+		byte[] ihdr = new byte[13];
+		putInt(ihdr, 0, width);
+		putInt(ihdr, 4, height);
+		ihdr[8] = 8;
+		ihdr[9] = (byte)(alpha ? 6 : 2);
+		writeChunk("IHDR", ihdr, ihdr.length);
+
+		//physical pixel size: pixels per meter, unit 1 (meter)
+		byte[] phys = new byte[9];
+		int ppm = (int)Math.round(dpi/0.0254);
+		putInt(phys, 0, ppm);
+		putInt(phys, 4, ppm);
+		phys[8] = 1;
+		writeChunk("pHYs", phys, phys.length);
+
+		deflater = new Deflater(6);
+		idat = new DeflaterOutputStream(new IdatStream(), deflater, IDAT_SIZE);
+	}
+
+	//WRITE ROWS
+
+	//writes rows [y0, y0+rows) from packed ARGB pixels with given width
+	public void band(int[] argb, int y0, int bandW, int rows) throws IOException {
+		if(y0 != rowsWritten || bandW != width || y0 + rows > height) {
+			throw new IOException("rows out of order: expected row " + rowsWritten + ", got " + y0);
+		}
+		try (RenderReport.Phase encode = RenderReport.phase(report, "encode")) {
+			encode.pixels((long)width*rows);
+			for(int row=0; row<rows; row++) {
+				writeRow(argb, row*width);
+			}
+		}
+	}
+
+	private void writeRow(int[] argb, int offset) throws IOException {
+
+		//unpack ARGB to RGB(A) bytes
+		int k = 0;
+		for(int col=0; col<width; col++) {
+			int c = argb[offset + col];
+			curRow[k]   = (byte)(c>>16);
+			curRow[k+1] = (byte)(c>>8);
+			curRow[k+2] = (byte)c;
+			if(bpp == 4) {
+				curRow[k+3] = (byte)(c>>>24);
+			}
+			k += bpp;
+		}
+
+		//apply each filter, keep the one with smallest sum of absolute values
+		int best = 0;
+		long bestSum = Long.MAX_VALUE;
+		for(int f=0; f<5; f++) {
+			long sum = filterRow(f, filtered[f]);
+			if(sum < bestSum) {
+				bestSum = sum;
+				best    = f;
+			}
+		}
+
+		idat.write(best);
+		idat.write(filtered[best], 0, curRow.length);
+
+		byte[] temp = prevRow;
+		prevRow = curRow;
+		curRow  = temp;
+		rowsWritten++;
+	}
+
+	//filter types: 0 none, 1 sub, 2 up, 3 average, 4 Paeth
+	private long filterRow(int type, byte[] dst) {
+		long sum = 0;
+		for(int i=0; i<curRow.length; i++) {
+			int x = curRow[i] & 0xff;
+			int a = i >= bpp ? curRow[i-bpp] & 0xff : 0; //left
+			int b = prevRow[i] & 0xff;                   //up (zero for first row)
+			int c = i >= bpp ? prevRow[i-bpp] & 0xff : 0; //up left
+			int p;
+			switch(type) {
+				case 1:  p = x - a;             break;
+				case 2:  p = x - b;             break;
+				case 3:  p = x - ((a + b)>>1);  break;
+				case 4:  p = x - paeth(a, b, c); break;
+				default: p = x;
+			}
+			dst[i] = (byte)p;
+			sum += Math.abs((byte)p);
+		}
+		return sum;
+	}
+
+	private static int paeth(int a, int b, int c) {
+		int p  = a + b - c;
+		int pa = Math.abs(p - a);
+		int pb = Math.abs(p - b);
+		int pc = Math.abs(p - c);
+		if(pa <= pb && pa <= pc) {
+			return a;
+		} else if(pb <= pc) {
+			return b;
+		}
+		return c;
+	}
+
+	//finishes image data and writes end chunk
+	public void close() throws IOException {
+		if(rowsWritten != height) {
+			out.close();
+			deflater.end();
+			throw new IOException("image incomplete: " + rowsWritten + " of " + height + " rows written");
+		}
+		RenderReport.Phase encode = RenderReport.phase(report, "encode");
+		try {
+			idat.close();
+			deflater.end();
+			writeChunk("IEND", new byte[0], 0);
+			out.close();
+		} finally {
+			encode.close();
+		}
+	}
+
+	//closes stream of an image that will not be finished
+	public void abort() throws IOException {
+		deflater.end();
+		out.close();
+	}
+
+	//closes writer of an image that failed and deletes its partial file
+	public void discard(File file) {
+		try {
+			abort();
+		} catch (IOException e) {
+			//file is deleted anyway
+		}
+		file.delete();
+	}
+
+	//CHUNKS
+
+	private void writeChunk(String type, byte[] data, int len) throws IOException {
+		byte[] typeBytes = type.getBytes("US-ASCII");
+		CRC32 crc = new CRC32();
+		crc.update(typeBytes);
+		crc.update(data, 0, len);
+		out.writeInt(len);
+		out.write(typeBytes);
+		out.write(data, 0, len);
+		out.writeInt((int)crc.getValue());
+	}
+
+	private static void putInt(byte[] b, int off, int v) {
+		b[off]   = (byte)(v>>>24);
+		b[off+1] = (byte)(v>>>16);
+		b[off+2] = (byte)(v>>>8);
+		b[off+3] = (byte)v;
+	}
+
+	//collects deflated bytes into IDAT chunks
+	private class IdatStream extends OutputStream {
+		private final byte[] buf = new byte[IDAT_SIZE];
+		private int len = 0;
+
+		public void write(int b) throws IOException {
+			buf[len++] = (byte)b;
+			if(len == buf.length) {
+				flushChunk();
+			}
+		}
+
+		public void write(byte[] b, int off, int n) throws IOException {
+			while(n > 0) {
+				int m = Math.min(n, buf.length - len);
+				System.arraycopy(b, off, buf, len, m);
+				len += m;
+				off += m;
+				n   -= m;
+				if(len == buf.length) {
+					flushChunk();
+				}
+			}
+		}
+
+		public void close() throws IOException {
+			flushChunk();
+		}
+
+		private void flushChunk() throws IOException {
+			if(len > 0) {
+				writeChunk("IDAT", buf, len);
+				len = 0;
+			}
+		}
+	}
+}
@@ -0,0 +1,290 @@
+package application;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.layout.StackPane;
+import javafx.scene.paint.Color;
+import javafx.util.Duration;
+
+/**
+ *Cylindrical Mirror Anamorphosis
+ *Live preview
+ *
+ *Renders a small version of the output whenever an input changes, so the
+ *parameters can be checked before a full render. Changes are debounced, then
+ *the output is rendered at 1/8 of the preview size, at 1/2 and at full
+ *preview size. A new change cancels the frame in progress.
+ *
+ *Frames are rendered on one background thread with the Inverse engine (no
+ *output grid, rows in parallel) from a copy of the input image decoded once
+ *to about SOURCE_MAX pixels, at a target DPI that fits the output in
+ *the preview pane.
+ *
+ *NOTE: Rendering options are static Transform fields, so the preview sets
+ *      them for each frame and restores them after it. Main pauses the
+ *      preview before it sets the options of a full render (see
+ *      Main.preRunCheck), and a paused preview does not touch them. It
+ *      leaves the Inverse filter, threads and grid options alone.
+ *
+ * @author  Garrett R. Mackelprang
+ * @version 1.02
+ * @edited  2026.10.17
+ */
+
+public class Preview {
+
+	private static final int    SOURCE_MAX = 1024;        //max edge of decoded input copy
+	private static final int[]  LEVELS     = {8, 2, 1};   //preview size divisors, coarse first
+	private static final double PROBE_DPI  = 10;          //target DPI of output size probe
+	private static final double DEBOUNCE   = 50;          //ms without changes before rendering
+
+	private final StackPane pane = new StackPane();
+	private final ImageView view = new ImageView();
+	private final int       width;  //preview pane size in pixels
+	private final int       height;
+
+	//one frame at a time, full render waits for the frame in progress
+	private final ExecutorService worker = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "preview");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private final ReentrantLock   rendering = new ReentrantLock();
+	private final PauseTransition debounce  = new PauseTransition(Duration.millis(DEBOUNCE));
+
+	private volatile int           frame;  //current request, older frames are cancelled
+	private volatile boolean       paused;
+	private volatile String        sourceUrl;
+	private volatile BufferedImage source; //decoded input copy
+
+	//latest settings {r,h,vx,vz}, null when inputs are not valid
+	private double[] geometry;
+	private boolean  drawCylinder;
+	private boolean  transparent;
+	private boolean  ignoreWhite;
+
+	public Preview(int width, int height) {
+		this.width  = width;
+		this.height = height;
+		view.setFitWidth(width);
+		view.setFitHeight(height);
+		view.setPreserveRatio(true);
+		pane.setPrefSize(width, height);
+		pane.setStyle("-fx-background-color: WHITE");
+		pane.getChildren().add(view);
+		debounce.setOnFinished(e -> submit());
+	}
+
+	public StackPane pane() {
+		return pane;
+	}
+
+	//INPUTS (JavaFX Application Thread)
+
+	//decodes input image copy in the background, then renders
+	public void setImage(final String url) {
+		sourceUrl = url;
+		source    = null;
+		view.setImage(null);
+		worker.execute(() -> {
+			try {
+				File input = new File(URI.create(url));
+				double[] size = Transform.imageSize(input);
+				double scale = Math.min(SOURCE_MAX/Math.max(size[0], size[1]), 1);
+				BufferedImage img = Transform.readImage(input, scale*size[0], scale*size[1]);
+				if(url.equals(sourceUrl)) {
+					source = img;
+				}
+			} catch (IOException | IllegalArgumentException e) {
+				//no preview of unreadable image
+			}
+		});
+		submit();
+	}
+
+	//new settings, rendered once no change follows for DEBOUNCE ms
+	public void update(double[] geometry, boolean drawCylinder, boolean transparent, boolean ignoreWhite) {
+		this.geometry     = geometry;
+		this.drawCylinder = drawCylinder;
+		this.transparent  = transparent;
+		this.ignoreWhite  = ignoreWhite;
+		frame++;
+		debounce.playFromStart();
+	}
+
+	//cancels frame in progress and waits for it, no frames until resume
+	public void pause() {
+		paused = true;
+		frame++;
+		debounce.stop();
+		rendering.lock();
+		rendering.unlock();
+	}
+
+	public void resume() {
+		paused = false;
+		submit();
+	}
+
+	private void submit() {
+		if(paused || geometry == null) {
+			return;
+		}
+		final int      req  = ++frame;
+		final double[] geom = geometry.clone();
+		final boolean  cyl  = drawCylinder;
+		final boolean  tr   = transparent;
+		final boolean  iw   = ignoreWhite;
+		worker.execute(() -> render(req, geom, cyl, tr, iw));
+	}
+
+	//RENDER (preview thread)
+
+	private void render(final int req, double[] geom, boolean cyl, boolean tr, boolean iw) {
+		rendering.lock();
+		SavedOptions saved = null;
+		try {
+			//a frame that takes the lock after pause returns here, before it
+			//reads or writes any option the full render is being given
+			BufferedImage src = source;
+			if(src == null || paused || req != frame) {
+				return;
+			}
+			saved = new SavedOptions();
+			Transform.progress = new Transform.Progress() {
+				public void phase(String name) {}
+				public void work(long done, long total) {}
+				public boolean isCancelled() {
+					return req != frame;
+				}
+			};
+
+			//options of preview frames
+			Transform.r            = geom[0];
+			Transform.h            = geom[1];
+			Transform.vx           = geom[2];
+			Transform.vz           = geom[3];
+			Transform.n            = 0;
+			Transform.meshTolerance = 0;
+			Transform.renderEngine = Transform.INVERSE;
+			Transform.tileSize     = 0;
+			Transform.aaSamples    = 0;
+			Transform.drawCylinder = cyl;
+			Transform.backgndColor = tr ? Color.TRANSPARENT : null;
+			Transform.ignoreColor  = iw ? Color.WHITE : null;
+
+			//output size grows with target DPI, probe it at a low DPI
+			double[] srcSize = {src.getWidth(), src.getHeight()};
+			int[] probe = outputSize(srcSize, PROBE_DPI);
+			double fitDpi = PROBE_DPI*Math.min((double)width/probe[0], (double)height/probe[1]);
+
+			for(int level : LEVELS) {
+				final WritableImage img = renderFrame(src, srcSize, fitDpi/level);
+				if(img == null) {
+					continue;
+				}
+				if(req != frame) {
+					return;
+				}
+				Platform.runLater(() -> {
+					if(req == frame) {
+						view.setImage(img);
+					}
+				});
+			}
+		} catch (CancellationException e) {
+			//newer frame requested
+		} catch (Exception e) {
+			System.err.println("preview: " + e.getMessage());
+		} finally {
+			if(saved != null) {
+				saved.restore();
+			}
+			rendering.unlock();
+		}
+	}
+
+	//Transform options set by a frame
+	private static class SavedOptions {
+		private final double             dpiT, r, h, vx, vz, meshTolerance;
+		private final int                n, renderEngine, tileSize, aaSamples;
+		private final boolean            drawCylinder;
+		private final Color              backgndColor, ignoreColor;
+		private final Transform.Progress progress;
+
+		SavedOptions() {
+			dpiT          = Transform.dpiT;
+			r             = Transform.r;
+			h             = Transform.h;
+			vx            = Transform.vx;
+			vz            = Transform.vz;
+			meshTolerance = Transform.meshTolerance;
+			n             = Transform.n;
+			renderEngine  = Transform.renderEngine;
+			tileSize      = Transform.tileSize;
+			aaSamples     = Transform.aaSamples;
+			drawCylinder  = Transform.drawCylinder;
+			backgndColor  = Transform.backgndColor;
+			ignoreColor   = Transform.ignoreColor;
+			progress      = Transform.progress;
+		}
+
+		void restore() {
+			Transform.dpiT          = dpiT;
+			Transform.r             = r;
+			Transform.h             = h;
+			Transform.vx            = vx;
+			Transform.vz            = vz;
+			Transform.meshTolerance = meshTolerance;
+			Transform.n             = n;
+			Transform.renderEngine  = renderEngine;
+			Transform.tileSize      = tileSize;
+			Transform.aaSamples     = aaSamples;
+			Transform.drawCylinder  = drawCylinder;
+			Transform.backgndColor  = backgndColor;
+			Transform.ignoreColor   = ignoreColor;
+			Transform.progress      = progress;
+		}
+	}
+
+	//output size {width, height} of input copy at target DPI
+	private static int[] outputSize(double[] srcSize, double dpi) {
+		Transform.dpiT = dpi;
+		double[] newImgSize = Transform.scaledImgSize(srcSize, 1);
+		double dpiN  = newImgSize[2];
+		double rPhy  = dpiN*Transform.r;
+		double vxPhy = dpiN*Transform.vx;
+		double vzPhy = dpiN*Transform.vz;
+		double[][] yzGrid = Transform.yzGrid(newImgSize);
+		double[] offsets  = Transform.offsets(yzGrid, rPhy, vxPhy, vzPhy, newImgSize);
+		return Transform.outputSize(yzGrid, rPhy, vxPhy, vzPhy, offsets[0], offsets[1], dpiN/dpi);
+	}
+
+	//renders input copy at one input pixel per output pixel, null when too small
+	private static WritableImage renderFrame(BufferedImage src, double[] srcSize, double dpi) throws Exception {
+		Transform.dpiT = dpi;
+		double[] newImgSize = Transform.scaledImgSize(srcSize, 1);
+		if(newImgSize[0] < 2 || newImgSize[1] < 2) {
+			return null;
+		}
+
+		int[] outSize = new int[2];
+		TileRenderer.TileSource engine = Transform.rasterEngine(Transform.decodePixels(src, newImgSize), newImgSize, outSize);
+		final WritableImage img = new WritableImage(outSize[0], outSize[1]);
+		Transform.renderRaster(engine, outSize, (argb, y0, w, h) ->
+				img.getPixelWriter().setPixels(0, y0, w, h, PixelFormat.getIntArgbInstance(), argb, 0, w));
+		return img;
+	}
+}
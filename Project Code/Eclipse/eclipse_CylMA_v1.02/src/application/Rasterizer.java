@@ -0,0 +1,328 @@
+package application;
+
+/**
+ *Cylindrical Mirror Anamorphosis
+ *Scanline rasterizer
+ *
+ *Fills polygon "pixels" straight into a packed ARGB int raster, replacing the
+ *Polygon/Polyline nodes and snapshot of the scene graph render path. Memory
+ *grows with the number of output pixels instead of the number of nodes.
+ *
+ *Geometry follows the JavaFX shapes it replaces: polygons use the non-zero
+ *winding rule and are sampled at pixel centers, outlines and the cylinder
+ *base are 1 pixel wide strokes centered on the path.
+ *
+ * @author  Garrett R. Mackelprang
+ * @version 1.02
+ * @edited  2026.10.17
+ */
+
+public class Rasterizer {
+
+	final int[] argb;   //packed ARGB pixels, row major
+	final int   x0;     //output x coordinate of raster column 0
+	final int   y0;     //output y coordinate of raster row 0
+	final int   width;  //raster width
+	final int   height; //raster height
+
+	//polygons with more points (merged runs) are filled with an edge table
+	static final int SMALL_POLYGON = 32;
+
+	//scanline crossings (x coordinate and winding direction), grown as needed
+	private double[] crossX   = new double[16];
+	private int[]    crossDir = new int[16];
+	private Edges    edges;
+
+	public Rasterizer(int width, int height) {
+		this(new int[width*height], 0, 0, width, height);
+	}
+
+	public Rasterizer(int[] argb, int x0, int y0, int width, int height) {
+		this.argb   = argb;
+		this.x0     = x0;
+		this.y0     = y0;
+		this.width  = width;
+		this.height = height;
+	}
+
+	//set every pixel to color
+	public void fill(int color) {
+		java.util.Arrays.fill(argb, 0, width*height, color);
+	}
+
+	//POLYGON FILL
+
+	//fills polygon given as interleaved x,y points (same layout as Polygon)
+	public void fillPolygon(double[] pts, int nPts, int color) {
+
+		if(color>>>24 == 0 || nPts < 3) {
+			return;
+		}
+
+		//vertical extent of polygon
+		double minY = pts[1];
+		double maxY = pts[1];
+		for(int k=1; k<nPts; k++) {
+			double y = pts[2*k+1];
+			if(y < minY) {
+				minY = y;
+			} else if(y > maxY) {
+				maxY = y;
+			}
+		}
+
+		//rows whose pixel centers lie inside [minY, maxY)
+		int startRow = Math.max((int)Math.ceil(minY - 0.5), y0);
+		int stopRow  = Math.min((int)Math.ceil(maxY - 0.5), y0 + height);
+
+		if(crossX.length < nPts) {
+			crossX   = new double[nPts];
+			crossDir = new int[nPts];
+		}
+
+		//large polygons only test the edges crossing each row
+		Edges table = null;
+		if(nPts > SMALL_POLYGON) {
+			if(edges == null) {
+				edges = new Edges();
+			}
+			table = edges;
+			table.set(pts, nPts, startRow, stopRow, 1);
+		}
+
+		for(int row=startRow; row<stopRow; row++) {
+			double yc = row + 0.5; //scanline through pixel centers
+
+			//find edge crossings
+			int c = 0;
+			if(table != null) {
+				c = table.crossings(row, crossX, crossDir);
+			} else {
+				double xa = pts[2*nPts-2];
+				double ya = pts[2*nPts-1];
+				for(int k=0; k<nPts; k++) {
+					double xb = pts[2*k];
+					double yb = pts[2*k+1];
+					if((ya <= yc) != (yb <= yc)) {
+						//from lower end, so a shared edge gives both polygons the same x
+						double x = ya < yb ? xa + (yc - ya)*(xb - xa)/(yb - ya)
+						                   : xb + (yc - yb)*(xa - xb)/(ya - yb);
+						//insertion sort crossings by x (polygons only have a few edges)
+						int dir  = yb > ya ? 1 : -1;
+						int m = c++;
+						while(m > 0 && crossX[m-1] > x) {
+							crossX[m]   = crossX[m-1];
+							crossDir[m] = crossDir[m-1];
+							m--;
+						}
+						crossX[m]   = x;
+						crossDir[m] = dir;
+					}
+					xa = xb;
+					ya = yb;
+				}
+			}
+
+			//fill spans with non-zero winding
+			int winding = 0;
+			for(int m=0; m<c-1; m++) {
+				winding += crossDir[m];
+				if(winding != 0) {
+					fillSpan(row, crossX[m], crossX[m+1], color);
+				}
+			}
+		}
+	}
+
+	//fills pixels on row whose centers lie inside [xL, xR)
+	private void fillSpan(int row, double xL, double xR, int color) {
+		int start = Math.max((int)Math.ceil(xL - 0.5), x0);
+		int stop  = Math.min((int)Math.ceil(xR - 0.5), x0 + width);
+		int k = (row - y0)*width - x0;
+		for(int col=start; col<stop; col++) {
+			plot(k + col, color);
+		}
+	}
+
+	//OUTLINES
+
+	//draws closed 1 pixel outline of polygon (fills anti-aliasing gaps in HQ method)
+	public void strokePolygon(double[] pts, int nPts, int color) {
+		if(color>>>24 == 0) {
+			return;
+		}
+		double xa = pts[2*nPts-2];
+		double ya = pts[2*nPts-1];
+		for(int k=0; k<nPts; k++) {
+			strokeLine(xa, ya, pts[2*k], pts[2*k+1], color);
+			xa = pts[2*k];
+			ya = pts[2*k+1];
+		}
+	}
+
+	//draws 1 pixel line, one pixel per step along the major axis
+	public void strokeLine(double xa, double ya, double xb, double yb, int color) {
+		double dx = xb - xa;
+		double dy = yb - ya;
+		int steps = (int)Math.ceil(Math.max(Math.abs(dx), Math.abs(dy)));
+		if(steps == 0) {
+			plotClipped((int)Math.floor(xa), (int)Math.floor(ya), color);
+			return;
+		}
+		//don't plot endpoint, it is the first point of the next edge
+		for(int k=0; k<steps; k++) {
+			double t = (double)k/steps;
+			plotClipped((int)Math.floor(xa + t*dx), (int)Math.floor(ya + t*dy), color);
+		}
+	}
+
+	//draws 1 pixel wide circle centered on radius
+	public void strokeCircle(double cx, double cy, double radius, int color) {
+		double rOut = radius + 0.5;
+		double rIn  = radius - 0.5;
+		int startRow = Math.max((int)Math.ceil(cy - rOut - 0.5), y0);
+		int stopRow  = Math.min((int)Math.ceil(cy + rOut - 0.5), y0 + height);
+		for(int row=startRow; row<stopRow; row++) {
+			double dy = row + 0.5 - cy;
+			double xOut = Math.sqrt(Math.max(rOut*rOut - dy*dy, 0));
+			double xIn  = Math.abs(dy) < rIn ? Math.sqrt(rIn*rIn - dy*dy) : 0;
+			fillSpan(row, cx - xOut, cx - xIn, color); //left side of ring
+			fillSpan(row, cx + xIn, cx + xOut, color); //right side of ring
+		}
+	}
+
+	//PIXEL BLENDING
+
+	private void plotClipped(int col, int row, int color) {
+		if(col >= x0 && col < x0 + width && row >= y0 && row < y0 + height) {
+			plot((row - y0)*width + col - x0, color);
+		}
+	}
+
+	private void plot(int k, int color) {
+		if(color>>>24 == 0xff) {
+			argb[k] = color;
+		} else {
+			argb[k] = blend(argb[k], color);
+		}
+	}
+
+	//source over blending of non-premultiplied ARGB colors
+	static int blend(int dst, int src) {
+		int sa = src>>>24;
+		int da = dst>>>24;
+		int fa = da*(255 - sa)/255;  //dst contribution
+		int oa = sa + fa;             //output alpha
+		if(oa == 0) {
+			return 0;
+		}
+		int r = (((src>>16) & 0xff)*sa + ((dst>>16) & 0xff)*fa)/oa;
+		int g = (((src>>8)  & 0xff)*sa + ((dst>>8)  & 0xff)*fa)/oa;
+		int b = (( src      & 0xff)*sa + ( dst      & 0xff)*fa)/oa;
+		return oa<<24 | r<<16 | g<<8 | b;
+	}
+
+	//EDGE TABLE
+
+	//edges of a large polygon bucketed by first scanline, so each scanline
+	//only looks at the few edges that cross it. Scanlines are at
+	//yc = (row + 0.5)/scale and must be visited in increasing row order.
+	static final class Edges {
+
+		private double[] lowX = new double[16]; //lower end (smaller y) of edge
+		private double[] lowY = new double[16];
+		private double[] topY = new double[16]; //upper end y
+		private double[] dX   = new double[16]; //upper end minus lower end
+		private double[] dY   = new double[16];
+		private int[]    dir  = new int[16];    //winding direction
+		private int[]    next = new int[16];    //next edge in bucket, -1 at end
+		private int[]    head = new int[16];    //first edge of each row bucket
+		private int[]    active = new int[16];
+		private int      nActive;
+		private int      start;
+		private double   scale;
+
+		//builds table of polygon given as interleaved x,y points for rows [start, stop)
+		void set(double[] pts, int nPts, int start, int stop, double scale) {
+			this.start = start;
+			this.scale = scale;
+			nActive    = 0;
+			if(lowX.length < nPts) {
+				lowX   = new double[nPts];
+				lowY   = new double[nPts];
+				topY   = new double[nPts];
+				dX     = new double[nPts];
+				dY     = new double[nPts];
+				dir    = new int[nPts];
+				next   = new int[nPts];
+				active = new int[nPts];
+			}
+			int rows = Math.max(stop - start, 0);
+			if(head.length < rows) {
+				head = new int[rows];
+			}
+			java.util.Arrays.fill(head, 0, rows, -1);
+
+			int e = 0;
+			double xa = pts[2*nPts-2];
+			double ya = pts[2*nPts-1];
+			for(int k=0; k<nPts; k++) {
+				double xb = pts[2*k];
+				double yb = pts[2*k+1];
+				if(ya != yb) {
+					boolean up = yb > ya;
+					lowX[e] = up ? xa : xb;
+					lowY[e] = up ? ya : yb;
+					topY[e] = up ? yb : ya;
+					dX[e]   = up ? xb - xa : xa - xb;
+					dY[e]   = up ? yb - ya : ya - yb;
+					dir[e]  = up ? 1 : -1;
+
+					//one row early in case of rounding, crossings test exactly
+					int row = Math.max((int)Math.ceil(lowY[e]*scale - 0.5) - 1, start);
+					if(row < stop && topY[e] > (start + 0.5)/scale) {
+						next[e] = head[row - start];
+						head[row - start] = e;
+						e++;
+					}
+				}
+				xa = xb;
+				ya = yb;
+			}
+		}
+
+		//crossings of scanline row sorted by x, returns number of crossings
+		int crossings(int row, double[] crossX, int[] crossDir) {
+			double yc = (row + 0.5)/scale;
+
+			//add edges starting near row, drop edges ending above it
+			for(int e=head[row - start]; e>=0; e=next[e]) {
+				active[nActive++] = e;
+			}
+			int c = 0;
+			int kept = 0;
+			for(int a=0; a<nActive; a++) {
+				int e = active[a];
+				if(topY[e] <= yc) {
+					continue;
+				}
+				active[kept++] = e;
+				if(lowY[e] > yc) {
+					continue;
+				}
+				//from lower end, like Supersampler, so crossings don't depend on point order
+				double x = lowX[e] + (yc - lowY[e])*dX[e]/dY[e];
+				int m = c++;
+				while(m > 0 && crossX[m-1] > x) {
+					crossX[m]   = crossX[m-1];
+					crossDir[m] = crossDir[m-1];
+					m--;
+				}
+				crossX[m]   = x;
+				crossDir[m] = dir[e];
+			}
+			nActive = kept;
+			return c;
+		}
+	}
+}
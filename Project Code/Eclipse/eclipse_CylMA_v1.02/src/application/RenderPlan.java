@@ -0,0 +1,268 @@
+package application;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *Cylindrical Mirror Anamorphosis
+ *Render planning
+ *
+ *Estimates a render before any work starts: resized input size, output
+ *pixel size, memory for input pixels, grid and output raster, and a rough
+ *render time. The estimate is compared with the free heap (Runtime.maxMemory)
+ *to choose the resize factor and, when allowed, the tile size and engine.
+ *
+ *Resize factors are tried from the largest useful one down (more than 3 input
+ *pixels per output pixel is not visible in the output), and for each factor
+ *the user's engine and tile options first, then leaner ones. So resolution
+ *is kept when a different strategy fits, and the image is only scaled down
+ *when none does.
+ *
+ *NOTE: Memory is an upper bound (every input pixel counted as visible) and
+ *      times are rough single thread costs measured with RenderBenchmark and
+ *      PngBenchmark on a desktop CPU, divided among worker threads where the
+ *      stage runs in parallel.
+ *
+ * @author  Garrett R. Mackelprang
+ * @version 1.02
+ * @edited  2026.10.17
+ */
+
+public class RenderPlan {
+
+	//part of the free heap a render may use
+	private static final double HEAP_SHARE = 0.8;
+
+	//input pixels per output pixel tried when scaling down, largest first
+	private static final double[] SCALES = {3, 2.5, 2, 1.5, 1, 0.75, 0.5};
+
+	//tile edges tried when the output raster does not fit in one piece
+	private static final int[] TILES = {2048, 1024, 512};
+
+	//max output edge of snapshot and writable image (Polygon engine)
+	private static final int SNAPSHOT_MAX = 12000;
+
+	//approximate heap bytes of one Polygon or Polyline node
+	private static final long NODE_BYTES = 1000;
+
+	//COSTS (ns)
+
+	private static final double GRID_NS     = 2;    //per grid point
+	private static final double POLY_HQ_NS  = 350;  //per input pixel, Scanline HQ
+	private static final double POLY_LOW_NS = 200;  //per input pixel, Scanline Low RAM
+	private static final double POLY_AA_NS  = 800;  //per input pixel, Scanline AA
+	private static final double FILL_HQ_NS  = 15;   //per output pixel, Scanline HQ
+	private static final double FILL_LOW_NS = 10;   //per output pixel, Scanline Low RAM
+	private static final double FILL_AA_NS  = 80;   //per output pixel, Scanline AA
+	private static final double INVERSE_NS  = 120;  //per output pixel, Inverse
+	private static final double NODE_NS     = 3000; //per node, Polygon
+	private static final double SNAPSHOT_NS = 30;   //per output pixel, Polygon snapshot
+	private static final double PNG_NS      = 130;  //per output pixel
+
+	//PLAN
+
+	public final double[] newImgSize;   //{newImgW,newImgH,dpiN}
+	public final int      outW;         //output size in pixels
+	public final int      outH;
+	public final int      renderEngine; //engine and tile edge to render with
+	public final int      tileSize;
+	public final int      tileEdge;     //tile edge the raster engines use, AA is always tiled (see Transform.tileEdge)
+	public final long     inputBytes;   //resized input image and its pixels
+	public final long     gridBytes;    //picture plane and output grid
+	public final long     rasterBytes;  //output raster, tiles or scene graph
+	public final long     heapBytes;    //heap the render may use
+	public final double   seconds;      //estimated render and encode time
+	public final boolean  feasible;     //engine can produce this output at all
+	private boolean       changed;      //engine or tile size differ from options
+
+	private RenderPlan(double[] newImgSize, int[] outSize, int renderEngine, int tileSize, int tileEdge,
+			long inputBytes, long gridBytes, long rasterBytes, long heapBytes, double seconds, boolean feasible) {
+		this.newImgSize   = newImgSize;
+		this.outW         = outSize[0];
+		this.outH         = outSize[1];
+		this.renderEngine = renderEngine;
+		this.tileSize     = tileSize;
+		this.tileEdge     = tileEdge;
+		this.inputBytes   = inputBytes;
+		this.gridBytes    = gridBytes;
+		this.rasterBytes  = rasterBytes;
+		this.heapBytes    = heapBytes;
+		this.seconds      = seconds;
+		this.feasible     = feasible;
+	}
+
+	public long peakBytes() {
+		return inputBytes + gridBytes + rasterBytes;
+	}
+
+	public boolean fits() {
+		return feasible && peakBytes() <= heapBytes;
+	}
+
+	//plans render of a source image of imgSize {width, height} with the current
+	//Transform options. With adapt, engine and tile size may be changed too,
+	//otherwise only the resize factor is chosen.
+	public static RenderPlan plan(double[] imgSize, boolean adapt) {
+		return plan(imgSize, adapt, Transform.renderEngine, Transform.tileSize);
+	}
+
+	//plans render starting from given engine and tile options instead of the
+	//Transform ones (a batch plans each image from the user's options)
+	public static RenderPlan plan(double[] imgSize, boolean adapt, int renderEngine, int tileSize) {
+		Runtime rt = Runtime.getRuntime();
+		long heap = (long)(HEAP_SHARE*(rt.maxMemory() - (rt.totalMemory() - rt.freeMemory())));
+
+		//strategies {engine, tile edge}, user's options first
+		List<int[]> strategies = new ArrayList<>();
+		strategies.add(new int[] {renderEngine, tileSize});
+		if(adapt) {
+			int engine = renderEngine == Transform.SCENE_GRAPH ? Transform.SCANLINE : renderEngine;
+			if(engine != renderEngine) {
+				strategies.add(new int[] {engine, 0});
+			}
+			for(int tile : TILES) {
+				if(tileSize <= 0 || tile < tileSize) {
+					strategies.add(new int[] {engine, tile});
+				}
+			}
+		}
+
+		//resized image sizes, largest first, never scaled up
+		double[] nativeSize = Transform.nativeImgSize(imgSize);
+		List<double[]> sizes = new ArrayList<>();
+		if(nativeSize[2] <= 3*Transform.dpiT) {
+			sizes.add(nativeSize);
+		}
+		for(double s : SCALES) {
+			if(s*Transform.dpiT < nativeSize[2]) {
+				sizes.add(Transform.scaledImgSize(imgSize, s));
+			}
+		}
+
+		//first size and strategy that fits, or leanest plan of the smallest size
+		RenderPlan plan = null;
+		for(double[] size : sizes) {
+			double[][] yzGrid = Transform.yzGrid(size);
+			int[] outSize = outputSize(size, yzGrid);
+			for(int[] strategy : strategies) {
+				plan = estimate(size, outSize, yzGrid[0].length, strategy[0], strategy[1], heap);
+				plan.changed = strategy != strategies.get(0);
+				if(plan.fits()) {
+					return plan;
+				}
+			}
+		}
+		return plan;
+	}
+
+	//sets Transform engine and tile options to the planned ones
+	public void apply() {
+		Transform.renderEngine = renderEngine;
+		Transform.tileSize     = tileSize;
+	}
+
+	//ESTIMATES
+
+	private static int[] outputSize(double[] newImgSize, double[][] yzGrid) {
+		double dpiN  = newImgSize[2];
+		double rPhy  = dpiN*Transform.r;
+		double vxPhy = dpiN*Transform.vx;
+		double vzPhy = dpiN*Transform.vz;
+		double[] offsets  = Transform.offsets(yzGrid, rPhy, vxPhy, vzPhy, newImgSize);
+		return Transform.outputSize(yzGrid, rPhy, vxPhy, vzPhy, offsets[0], offsets[1], dpiN/Transform.dpiT);
+	}
+
+	//gridCols: grid points per row (n or adaptive interpolating points, see Transform.yzGrid)
+	private static RenderPlan estimate(double[] newImgSize, int[] outSize, int gridCols, int engine, int tile, long heap) {
+		long px    = (long)newImgSize[0]*(long)newImgSize[1];
+		long cols  = gridCols;
+		long rows  = (long)newImgSize[1] + 1;
+		long outPx = (long)outSize[0]*outSize[1];
+		int workers = Transform.threads > 0
+				? Math.min(Transform.threads, Runtime.getRuntime().availableProcessors())
+				: Runtime.getRuntime().availableProcessors();
+		boolean aa = engine == Transform.SCANLINE && Transform.aaSamples > 1;
+		int edge = tile <= 0 && aa ? Transform.AA_TILE : tile; //see Transform.tileEdge
+
+		//MEMORY
+
+		//resized image, plus packed pixels for raster engines
+		long input = 4*px + (engine == Transform.SCENE_GRAPH ? 0 : 4*px);
+
+		//picture plane grid, output grid (full or two rows per worker)
+		long grid = 8*(cols + rows);
+		if(engine == Transform.INVERSE) {
+			grid += 40*cols; //column terms
+		} else if(Transform.rollingGrid) {
+			grid += 32*cols*(edge > 0 ? workers : 1);
+		} else {
+			grid += 16*cols*rows;
+		}
+
+		long raster;
+		boolean feasible = true;
+		if(engine == Transform.SCENE_GRAPH) {
+			//nodes, then snapshot, writable image and buffered image
+			raster   = px*NODE_BYTES*(Transform.hqMethod ? 2 : 1) + 12*outPx;
+			feasible = outSize[0] <= SNAPSHOT_MAX && outSize[1] <= SNAPSHOT_MAX;
+		} else if(edge <= 0) {
+			raster   = 4*outPx;
+			feasible = outPx < Integer.MAX_VALUE - 8;
+		} else {
+			//band of tiles, tile (and sample buffer) per worker, band index
+			long tilePx = (long)edge*edge;
+			raster = 4L*outSize[0]*Math.min(edge, outSize[1]) + workers*tilePx*(aa ? 20 : 4);
+			if(engine == Transform.SCANLINE) {
+				raster += 8*px;
+			}
+		}
+
+		//TIME
+
+		double ns = GRID_NS*cols*rows + PNG_NS*outPx;
+		int tilesAcross = edge > 0 ? (outSize[0] + edge - 1)/edge : 1;
+		if(engine == Transform.SCENE_GRAPH) {
+			ns += NODE_NS*px*(Transform.hqMethod ? 2 : 1) + SNAPSHOT_NS*outPx;
+		} else if(engine == Transform.INVERSE) {
+			ns += INVERSE_NS*outPx/workers;
+		} else {
+			double poly = aa ? POLY_AA_NS : Transform.hqMethod ? POLY_HQ_NS : POLY_LOW_NS;
+			double fill = aa ? FILL_AA_NS : Transform.hqMethod ? FILL_HQ_NS : FILL_LOW_NS;
+			ns += (poly*px + fill*outPx)/Math.min(workers, tilesAcross);
+		}
+
+		return new RenderPlan(newImgSize, outSize, engine, tile, edge, input, grid, raster, heap, ns/1e9, feasible);
+	}
+
+	//REPORT
+
+	private static final String[] ENGINES = {"Polygon", "Scanline", "Inverse"};
+
+	@Override
+	public String toString() {
+		StringBuilder txt = new StringBuilder();
+		txt.append(String.format("Input %d x %d px, output %d x %d px%n",
+				(long)newImgSize[0], (long)newImgSize[1], outW, outH));
+		txt.append(String.format("Memory: input %s, grid %s, raster %s, peak %s of %s free%n",
+				mib(inputBytes), mib(gridBytes), mib(rasterBytes), mib(peakBytes()), mib(heapBytes)));
+		txt.append("Engine: ").append(ENGINES[renderEngine]);
+		txt.append(tileEdge > 0 ? ", tiled " + tileEdge + " px" : ", one piece");
+		if(changed) {
+			txt.append(" (changed to fit)");
+		}
+		txt.append(String.format("%nEstimated time: %s", time(seconds)));
+		if(!fits()) {
+			txt.append(String.format("%nWARNING: render may run out of memory, increase -Xmx"));
+		}
+		return txt.toString();
+	}
+
+	private static String mib(long bytes) {
+		return bytes < 10L<<20 ? String.format("%.1f MB", bytes/1048576.0) : (bytes>>20) + " MB";
+	}
+
+	private static String time(double seconds) {
+		return seconds < 60 ? String.format("%.0f s", Math.max(seconds, 1))
+				: String.format("%.0f min", seconds/60);
+	}
+}
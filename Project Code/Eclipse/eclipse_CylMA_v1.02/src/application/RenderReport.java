@@ -0,0 +1,288 @@
+package application;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ *Cylindrical Mirror Anamorphosis
+ *Render instrumentation
+ *
+ *Times the phases of a render (decode, resize, index, grid, offsets, fill,
+ *snapshot, encode). Every phase is a Java Flight Recorder event
+ *(application.RenderPhase) with its duration, pixel and polygon counts and
+ *bytes allocated, recorded whenever a flight recording runs, e.g.
+ *
+ *   java -XX:StartFlightRecording=filename=render.jfr ... application.Headless ...
+ *
+ *A render that started a report (GUI, Headless -report) also adds its phases
+ *up per name and gives them as a JSON summary when it is finished.
+ *
+ *NOTE: Allocation is read from ThreadMXBean for all live threads (rows and
+ *      tiles run on pool threads), so in a batch it includes stages of other
+ *      images running at the same time, and threads that end during a phase
+ *      are not counted.
+ *
+ * @author  Garrett R. Mackelprang
+ * @version 1.02
+ * @edited  2026.10.17
+ */
+
+public class RenderReport {
+
+	//report of render running on this thread
+	private static final ThreadLocal<RenderReport> CURRENT = new ThreadLocal<>();
+
+	//last finished report
+	private static volatile RenderReport last;
+
+	//per thread allocation counters, null when the JVM has none
+	private static final com.sun.management.ThreadMXBean THREADS = threadBean();
+
+	private final String input;
+	private final long   started = System.nanoTime();
+	private long         nanos;          //total time, set by finish
+	private int          outW;           //output size, set by PngWriter
+	private int          outH;
+
+	//totals per phase name {count, nanos, pixels, polygons, bytes}, in order of first use
+	private final Map<String, long[]> totals = new LinkedHashMap<>();
+
+	public RenderReport(String input) {
+		this.input = input;
+	}
+
+	//starts report of a render on this thread
+	public static RenderReport start(String input) {
+		RenderReport report = new RenderReport(input);
+		CURRENT.set(report);
+		return report;
+	}
+
+	//report of render on this thread, null when none was started
+	public static RenderReport current() {
+		return CURRENT.get();
+	}
+
+	public static RenderReport last() {
+		return last;
+	}
+
+	//continues report on this thread (stages of a batch job run on different threads)
+	public void attach() {
+		CURRENT.set(this);
+	}
+
+	public void detach() {
+		if(CURRENT.get() == this) {
+			CURRENT.remove();
+		}
+	}
+
+	//ends report, it becomes the last report
+	public RenderReport finish() {
+		nanos = System.nanoTime() - started;
+		detach();
+		last = this;
+		return this;
+	}
+
+	//output image size
+	void outputSize(int width, int height) {
+		outW = width;
+		outH = height;
+	}
+
+	//PHASES
+
+	//starts phase of render on this thread, close it when the phase ends
+	public static Phase phase(String name) {
+		return new Phase(CURRENT.get(), name);
+	}
+
+	//starts phase of given report (may be null), for stages on other threads
+	public static Phase phase(RenderReport report, String name) {
+		return new Phase(report, name);
+	}
+
+	private synchronized void add(String name, long nanos, long pixels, long polygons, long bytes) {
+		long[] total = totals.get(name);
+		if(total == null) {
+			total = new long[5];
+			totals.put(name, total);
+		}
+		total[0]++;
+		total[1] += nanos;
+		total[2] += pixels;
+		total[3] += polygons;
+		total[4] += Math.max(bytes, 0);
+	}
+
+	//one timed phase, also a flight recorder event
+	public static class Phase implements AutoCloseable {
+
+		private final RenderReport report;
+		private final String       name;
+		private final PhaseEvent   event = new PhaseEvent();
+		private final long         start;
+		private final Map<Long, Long> allocated;
+		private long               pixels;
+		private long               polygons;
+
+		private Phase(RenderReport report, String name) {
+			this.report = report;
+			this.name   = name;
+			allocated   = allocatedBytes();
+			event.begin();
+			start = System.nanoTime();
+		}
+
+		//pixels processed in phase
+		public Phase pixels(long count) {
+			pixels = count;
+			return this;
+		}
+
+		//polygons filled in phase
+		public Phase polygons(long count) {
+			polygons = count;
+			return this;
+		}
+
+		@Override
+		public void close() {
+			long nanos = System.nanoTime() - start;
+			event.end();
+			long bytes = bytesSince(allocated);
+			if(event.shouldCommit()) {
+				event.phase          = name;
+				event.pixels         = pixels;
+				event.polygons       = polygons;
+				event.bytesAllocated = bytes;
+				event.commit();
+			}
+			if(report != null) {
+				report.add(name, nanos, pixels, polygons, bytes);
+			}
+		}
+	}
+
+	@Name("application.RenderPhase")
+	@Label("Render Phase")
+	@Category("Anamorphosis")
+	@Description("Phase of an anamorphic render")
+	static class PhaseEvent extends jdk.jfr.Event {
+		@Label("Phase")
+		String phase;
+
+		@Label("Pixels")
+		long pixels;
+
+		@Label("Polygons")
+		long polygons;
+
+		@Label("Bytes Allocated")
+		@DataAmount
+		long bytesAllocated;
+	}
+
+	//ALLOCATION
+
+	private static com.sun.management.ThreadMXBean threadBean() {
+		try {
+			java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+			if(bean instanceof com.sun.management.ThreadMXBean) {
+				com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)bean;
+				if(threads.isThreadAllocatedMemorySupported()) {
+					threads.setThreadAllocatedMemoryEnabled(true);
+					return threads;
+				}
+			}
+		} catch (UnsupportedOperationException | SecurityException e) {
+			//no allocation counters
+		}
+		return null;
+	}
+
+	//allocated bytes per live thread id
+	private static Map<Long, Long> allocatedBytes() {
+		Map<Long, Long> bytes = new HashMap<>();
+		if(THREADS != null) {
+			long[] ids = THREADS.getAllThreadIds();
+			long[] allocated = THREADS.getThreadAllocatedBytes(ids);
+			for(int k=0; k<ids.length; k++) {
+				if(allocated[k] >= 0) {
+					bytes.put(ids[k], allocated[k]);
+				}
+			}
+		}
+		return bytes;
+	}
+
+	//bytes allocated by live threads since before, -1 when not available
+	private static long bytesSince(Map<Long, Long> before) {
+		if(THREADS == null) {
+			return -1;
+		}
+		long sum = 0;
+		for(Map.Entry<Long, Long> now : allocatedBytes().entrySet()) {
+			Long then = before.get(now.getKey());
+			sum += now.getValue() - (then == null ? 0 : then);
+		}
+		return sum;
+	}
+
+	//JSON
+
+	//summary of finished report, one line
+	public synchronized String toJson() {
+		StringBuilder json = new StringBuilder();
+		json.append("{\"input\":").append(quote(input));
+		json.append(",\"outputWidth\":").append(outW);
+		json.append(",\"outputHeight\":").append(outH);
+		json.append(",\"ms\":").append(ms(nanos));
+		json.append(",\"phases\":[");
+		boolean first = true;
+		for(Map.Entry<String, long[]> phase : totals.entrySet()) {
+			long[] total = phase.getValue();
+			json.append(first ? "" : ",");
+			json.append("{\"name\":").append(quote(phase.getKey()));
+			json.append(",\"count\":").append(total[0]);
+			json.append(",\"ms\":").append(ms(total[1]));
+			json.append(",\"pixels\":").append(total[2]);
+			json.append(",\"polygons\":").append(total[3]);
+			json.append(",\"bytesAllocated\":").append(THREADS == null ? -1 : total[4]);
+			json.append('}');
+			first = false;
+		}
+		return json.append("]}").toString();
+	}
+
+	private static String ms(long nanos) {
+		return String.format(java.util.Locale.ROOT, "%.3f", nanos/1e6);
+	}
+
+	private static String quote(String txt) {
+		if(txt == null) {
+			return "null";
+		}
+		StringBuilder quoted = new StringBuilder("\"");
+		for(char c : txt.toCharArray()) {
+			if(c == '"' || c == '\\') {
+				quoted.append('\\').append(c);
+			} else if(c < 0x20) {
+				quoted.append(String.format("\\u%04x", (int)c));
+			} else {
+				quoted.append(c);
+			}
+		}
+		return quoted.append('"').toString();
+	}
+}
@@ -0,0 +1,282 @@
+package application;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.Raster;
+
+/**
+ *Cylindrical Mirror Anamorphosis
+ *Image resampling
+ *
+ *Resizes packed ARGB rasters to an exact size with a separable filter: rows
+ *are resampled to the new width, then columns to the new height. Both passes
+ *run blocks of rows in parallel, and each output pixel only depends on its
+ *own weights, so the result does not depend on the number of threads.
+ *
+ *Filters (weights are stretched by the scale factor when shrinking):
+ *   BOX      source pixels whose centers fall inside the output pixel
+ *   AREA     source pixels weighted by how much of them the output pixel covers
+ *   MITCHELL cubic, B = C = 1/3 (support 2)
+ *   LANCZOS3 windowed sinc (support 3), sharpest, may ring at hard edges
+ *
+ *NOTE: Colors are filtered with premultiplied alpha, so transparent pixels
+ *      do not bleed their (invisible) color into visible neighbors. The
+ *      intermediate raster is rounded to 8 bits per channel.
+ *
+ * @author  Garrett R. Mackelprang
+ * @version 1.02
+ * @edited  2026.10.17
+ */
+
+public class Resampler {
+
+	//FILTERS
+
+	public static final int BOX      = 0;
+	public static final int AREA     = 1;
+	public static final int MITCHELL = 2;
+	public static final int LANCZOS3 = 3;
+
+	//rows per parallel block
+	private static final int BLOCK = 16;
+
+	//packed ARGB pixels of decoded image, converted in parallel blocks of rows.
+	//8 bit RGB(A) byte rasters (what ImageIO gives for most PNG and JPEG) are
+	//read directly, anything else through getRGB.
+	public static int[] pixels(final BufferedImage img) {
+		final int w = img.getWidth();
+		final int h = img.getHeight();
+		final int[] argb = new int[w*h];
+		final Raster raster = img.getRaster();
+		final boolean direct = isByteRgb(img);
+		final int blockH = Math.max((BLOCK<<12)/w, 1);
+		Parallel.forRange(Transform.threads, 0, (h + blockH - 1)/blockH, block -> {
+			int y0 = block*blockH;
+			int y1 = Math.min(y0 + blockH, h);
+			if(!direct) {
+				img.getRGB(0, y0, w, y1 - y0, argb, y0*w, w);
+				return;
+			}
+			PixelInterleavedSampleModel sm = (PixelInterleavedSampleModel)raster.getSampleModel();
+			byte[] data = ((DataBufferByte)raster.getDataBuffer()).getData();
+			int   scan  = sm.getScanlineStride();
+			int   step  = sm.getPixelStride();
+			int[] band  = sm.getBandOffsets(); //r, g, b(, a)
+			int   base  = -raster.getSampleModelTranslateY()*scan - raster.getSampleModelTranslateX()*step;
+			boolean alpha = band.length == 4;
+			for(int y=y0; y<y1; y++) {
+				int p = base + y*scan;
+				int k = y*w;
+				for(int x=0; x<w; x++, p+=step) {
+					int a = alpha ? data[p + band[3]] & 0xff : 0xff;
+					argb[k + x] = a<<24 | (data[p + band[0]] & 0xff)<<16
+							| (data[p + band[1]] & 0xff)<<8 | (data[p + band[2]] & 0xff);
+				}
+			}
+		});
+		return argb;
+	}
+
+	//sRGB, 8 bits per band, straight alpha, one byte per sample
+	private static boolean isByteRgb(BufferedImage img) {
+		Raster raster = img.getRaster();
+		if(!(img.getColorModel() instanceof ComponentColorModel)
+				|| !(raster.getSampleModel() instanceof PixelInterleavedSampleModel)
+				|| !(raster.getDataBuffer() instanceof DataBufferByte)) {
+			return false;
+		}
+		ComponentColorModel cm = (ComponentColorModel)img.getColorModel();
+		int bands = raster.getNumBands();
+		if(!cm.getColorSpace().isCS_sRGB() || cm.isAlphaPremultiplied()
+				|| bands != (cm.hasAlpha() ? 4 : 3)) {
+			return false;
+		}
+		for(int b=0; b<bands; b++) {
+			if(cm.getComponentSize(b) != 8) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	//resizes src (srcW x srcH) to dstW x dstH
+	public static int[] resize(final int[] src, final int srcW, final int srcH,
+			final int dstW, final int dstH, int filter) {
+
+		final Weights cols = new Weights(srcW, dstW, filter);
+		final Weights rows = new Weights(srcH, dstH, filter);
+
+		//HORIZONTAL PASS: srcW x srcH -> dstW x srcH, premultiplied
+
+		final int[] tmp = new int[dstW*srcH];
+		Parallel.forRange(Transform.threads, 0, (srcH + BLOCK - 1)/BLOCK, block -> {
+			float[] row = new float[4*srcW];
+			for(int y=block*BLOCK; y<Math.min((block + 1)*BLOCK, srcH); y++) {
+
+				//premultiply source row once, each pixel is used by several taps
+				for(int x=0; x<srcW; x++) {
+					int c = src[y*srcW + x];
+					float a = (c>>>24)/255f;
+					row[4*x]   = c>>>24;
+					row[4*x+1] = ((c>>16) & 0xff)*a;
+					row[4*x+2] = ((c>>8)  & 0xff)*a;
+					row[4*x+3] = ( c      & 0xff)*a;
+				}
+
+				for(int x=0; x<dstW; x++) {
+					float a = 0, r = 0, g = 0, b = 0;
+					int k = cols.start[x];
+					int w = x*cols.stride;
+					for(int t=0; t<cols.taps[x]; t++, k++, w++) {
+						float wt = cols.weight[w];
+						a += wt*row[4*k];
+						r += wt*row[4*k+1];
+						g += wt*row[4*k+2];
+						b += wt*row[4*k+3];
+					}
+					tmp[y*dstW + x] = pack(a, r, g, b);
+				}
+			}
+		});
+
+		//VERTICAL PASS: dstW x srcH -> dstW x dstH, back to straight alpha
+
+		final int[] dst = new int[dstW*dstH];
+		Parallel.forRange(Transform.threads, 0, (dstH + BLOCK - 1)/BLOCK, block -> {
+			float[] acc = new float[4*dstW];
+			for(int y=block*BLOCK; y<Math.min((block + 1)*BLOCK, dstH); y++) {
+				java.util.Arrays.fill(acc, 0);
+
+				//source rows are added one at a time, rows are contiguous in tmp
+				int k = rows.start[y];
+				int w = y*rows.stride;
+				for(int t=0; t<rows.taps[y]; t++, k++, w++) {
+					float wt = rows.weight[w];
+					int p = k*dstW;
+					for(int x=0; x<dstW; x++) {
+						int c = tmp[p + x];
+						acc[4*x]   += wt*(c>>>24);
+						acc[4*x+1] += wt*((c>>16) & 0xff);
+						acc[4*x+2] += wt*((c>>8)  & 0xff);
+						acc[4*x+3] += wt*( c      & 0xff);
+					}
+				}
+
+				for(int x=0; x<dstW; x++) {
+					dst[y*dstW + x] = unpremultiply(acc[4*x], acc[4*x+1], acc[4*x+2], acc[4*x+3]);
+				}
+			}
+		});
+
+		return dst;
+	}
+
+	//packs premultiplied channels, clamped (negative lobes can overshoot)
+	private static int pack(float a, float r, float g, float b) {
+		int ia = clamp(a);
+		return ia<<24 | Math.min(clamp(r), ia)<<16 | Math.min(clamp(g), ia)<<8 | Math.min(clamp(b), ia);
+	}
+
+	private static int unpremultiply(float a, float r, float g, float b) {
+		int ia = clamp(a);
+		if(ia == 0) {
+			return 0;
+		}
+		float s = 255f/a;
+		return ia<<24 | clamp(r*s)<<16 | clamp(g*s)<<8 | clamp(b*s);
+	}
+
+	private static int clamp(float v) {
+		return v <= 0 ? 0 : v >= 255 ? 255 : (int)(v + 0.5f);
+	}
+
+	//WEIGHTS
+
+	//filter taps of each output coordinate along one axis
+	private static class Weights {
+		final int[]   start;  //first source index
+		final int[]   taps;   //number of source indexes
+		final int     stride; //max taps, weight array stride
+		final float[] weight; //normalized weights, stride per output index
+
+		Weights(int srcLen, int dstLen, int filter) {
+			double scale   = (double)srcLen/dstLen;
+			double stretch = Math.max(scale, 1); //filter widens when shrinking
+			double support = support(filter)*stretch;
+
+			start  = new int[dstLen];
+			taps   = new int[dstLen];
+			stride = (int)Math.ceil(2*support) + 2;
+			weight = new float[dstLen*stride];
+
+			double[] w = new double[stride];
+			for(int i=0; i<dstLen; i++) {
+				double center = (i + 0.5)*scale;
+				int first = Math.max((int)Math.floor(center - support), 0);
+				int last  = Math.min((int)Math.ceil(center + support), srcLen - 1);
+				int n = 0;
+				double sum = 0;
+				for(int j=first; j<=last && n<stride; j++, n++) {
+					w[n] = filter == AREA
+							? overlap(i*scale, (i + 1)*scale, j)
+							: kernel(filter, (j + 0.5 - center)/stretch);
+					sum += w[n];
+				}
+
+				//skip zero weights at both ends
+				int lo = 0;
+				int hi = n;
+				while(lo < hi - 1 && w[lo] == 0) {
+					lo++;
+				}
+				while(hi > lo + 1 && w[hi-1] == 0) {
+					hi--;
+				}
+				start[i] = first + lo;
+				taps[i]  = hi - lo;
+				for(int t=lo; t<hi; t++) {
+					weight[i*stride + t - lo] = (float)(sum != 0 ? w[t]/sum : 1.0/(hi - lo));
+				}
+			}
+		}
+	}
+
+	private static double support(int filter) {
+		switch(filter) {
+			case BOX:      return 0.5;
+			case AREA:     return 1;
+			case MITCHELL: return 2;
+			default:       return 3;
+		}
+	}
+
+	private static double kernel(int filter, double x) {
+		x = Math.abs(x);
+		switch(filter) {
+			case BOX:
+				return x < 0.5 ? 1 : x == 0.5 ? 0.5 : 0;
+			case MITCHELL:
+				if(x < 1) {
+					return (7*x*x*x - 12*x*x + 16.0/3)/6;
+				} else if(x < 2) {
+					return (-7.0/3*x*x*x + 12*x*x - 20*x + 32.0/3)/6;
+				}
+				return 0;
+			default: //Lanczos 3
+				if(x == 0) {
+					return 1;
+				} else if(x < 3) {
+					double px = Math.PI*x;
+					return 3*Math.sin(px)*Math.sin(px/3)/(px*px);
+				}
+				return 0;
+		}
+	}
+
+	//length of source pixel j inside output pixel footprint [x0, x1)
+	private static double overlap(double x0, double x1, int j) {
+		return Math.max(Math.min(x1, j + 1) - Math.max(x0, j), 0);
+	}
+}
@@ -0,0 +1,212 @@
+package application;
+
+/**
+ *Cylindrical Mirror Anamorphosis
+ *Supersampled anti-aliasing
+ *
+ *Anti-aliased polygon fill for the Scanline engine. Each output pixel is
+ *sampled on an N x N grid, the covered samples of every polygon are added to
+ *a float buffer (premultiplied alpha) and the buffer is composed over the
+ *raster when the tile is done. Replaces the HQ outlines, so no geometry is
+ *added per pixel.
+ *
+ *NOTE: Samples are taken at sample centers with half-open spans and edge
+ *      crossings are always computed from the lower end of an edge, so two
+ *      polygons sharing an edge split its samples exactly: no gaps and no
+ *      double coverage between neighboring input pixels. Where polygons
+ *      overlap (back of the cylinder) their colors are averaged.
+ *
+ *NOTE: The buffer holds 4 floats per pixel of the raster, so the engine
+ *      always renders in tiles when anti-aliasing (see Transform.tileEdge).
+ *
+ * @author  Garrett R. Mackelprang
+ * @version 1.02
+ * @edited  2026.10.17
+ */
+
+public class Supersampler {
+
+	private final Rasterizer target;  //raster composed onto by resolve
+	private final int        samples; //samples per pixel edge
+	private final float      weight;  //coverage of one sample
+	private final float[]    acc;     //premultiplied a,r,g,b per raster pixel
+
+	//scanline crossings (x coordinate and winding direction), grown as needed
+	private double[] crossX   = new double[16];
+	private int[]    crossDir = new int[16];
+	private Rasterizer.Edges edges;
+
+	public Supersampler(Rasterizer target, int samples) {
+		this.target  = target;
+		this.samples = samples;
+		weight       = 1f/(samples*samples);
+		acc          = new float[4*target.width*target.height];
+	}
+
+	//POLYGON FILL
+
+	//adds coverage of polygon given as interleaved x,y points (non-zero winding)
+	public void fillPolygon(double[] pts, int nPts, int color) {
+
+		if(color>>>24 == 0 || nPts < 3) {
+			return;
+		}
+
+		//vertical extent of polygon
+		double minY = pts[1];
+		double maxY = pts[1];
+		for(int k=1; k<nPts; k++) {
+			double y = pts[2*k+1];
+			if(y < minY) {
+				minY = y;
+			} else if(y > maxY) {
+				maxY = y;
+			}
+		}
+
+		//sample rows whose centers lie inside [minY, maxY)
+		int startSub = Math.max((int)Math.ceil(minY*samples - 0.5), target.y0*samples);
+		int stopSub  = Math.min((int)Math.ceil(maxY*samples - 0.5), (target.y0 + target.height)*samples);
+
+		if(crossX.length < nPts) {
+			crossX   = new double[nPts];
+			crossDir = new int[nPts];
+		}
+
+		//merged runs have many edges, only test those crossing each sample row
+		Rasterizer.Edges table = null;
+		if(nPts > Rasterizer.SMALL_POLYGON) {
+			if(edges == null) {
+				edges = new Rasterizer.Edges();
+			}
+			table = edges;
+			table.set(pts, nPts, startSub, stopSub, samples);
+		}
+
+		for(int sub=startSub; sub<stopSub; sub++) {
+			double yc = (sub + 0.5)/samples; //scanline through sample centers
+
+			//find edge crossings
+			int c = 0;
+			if(table != null) {
+				c = table.crossings(sub, crossX, crossDir);
+			} else {
+				double xa = pts[2*nPts-2];
+				double ya = pts[2*nPts-1];
+				for(int k=0; k<nPts; k++) {
+					double xb = pts[2*k];
+					double yb = pts[2*k+1];
+					if((ya <= yc) != (yb <= yc)) {
+						//from lower end, so a shared edge gives both polygons the same x
+						double x = ya < yb ? xa + (yc - ya)*(xb - xa)/(yb - ya)
+						                   : xb + (yc - yb)*(xa - xb)/(ya - yb);
+						int dir  = yb > ya ? 1 : -1;
+						int m = c++;
+						while(m > 0 && crossX[m-1] > x) {
+							crossX[m]   = crossX[m-1];
+							crossDir[m] = crossDir[m-1];
+							m--;
+						}
+						crossX[m]   = x;
+						crossDir[m] = dir;
+					}
+					xa = xb;
+					ya = yb;
+				}
+			}
+
+			//cover spans with non-zero winding
+			int winding = 0;
+			for(int m=0; m<c-1; m++) {
+				winding += crossDir[m];
+				if(winding != 0) {
+					coverSpan(sub, crossX[m], crossX[m+1], color);
+				}
+			}
+		}
+	}
+
+	//adds coverage of 1 pixel wide circle centered on radius
+	public void strokeCircle(double cx, double cy, double radius, int color) {
+		double rOut = radius + 0.5;
+		double rIn  = radius - 0.5;
+		int startSub = Math.max((int)Math.ceil((cy - rOut)*samples - 0.5), target.y0*samples);
+		int stopSub  = Math.min((int)Math.ceil((cy + rOut)*samples - 0.5), (target.y0 + target.height)*samples);
+		for(int sub=startSub; sub<stopSub; sub++) {
+			double dy = (sub + 0.5)/samples - cy;
+			double xOut = Math.sqrt(Math.max(rOut*rOut - dy*dy, 0));
+			double xIn  = Math.abs(dy) < rIn ? Math.sqrt(rIn*rIn - dy*dy) : 0;
+			coverSpan(sub, cx - xOut, cx - xIn, color); //left side of ring
+			coverSpan(sub, cx + xIn, cx + xOut, color); //right side of ring
+		}
+	}
+
+	//adds samples of sample row sub whose centers lie inside [xL, xR)
+	private void coverSpan(int sub, double xL, double xR, int color) {
+		int start = Math.max((int)Math.ceil(xL*samples - 0.5), target.x0*samples);
+		int stop  = Math.min((int)Math.ceil(xR*samples - 0.5), (target.x0 + target.width)*samples);
+		if(start >= stop) {
+			return;
+		}
+
+		//premultiplied color of one sample
+		float a = (color>>>24)*weight/255;
+		float r = ((color>>16) & 0xff)*a;
+		float g = ((color>>8)  & 0xff)*a;
+		float b = ( color      & 0xff)*a;
+
+		int row = sub/samples - target.y0;
+		int k   = row*target.width - target.x0;
+		while(start < stop) {
+			int col  = start/samples;
+			int next = Math.min((col + 1)*samples, stop);
+			int p    = 4*(k + col);
+			int cnt  = next - start;
+			acc[p]   += cnt*a;
+			acc[p+1] += cnt*r;
+			acc[p+2] += cnt*g;
+			acc[p+3] += cnt*b;
+			start = next;
+		}
+	}
+
+	//COMPOSE
+
+	//composes accumulated coverage over raster pixels (source over) and clears it
+	public void resolve() {
+		int[] argb = target.argb;
+		for(int k=0; k<target.width*target.height; k++) {
+			float a = acc[4*k];
+			if(a == 0) {
+				continue;
+			}
+			float r = acc[4*k+1];
+			float g = acc[4*k+2];
+			float b = acc[4*k+3];
+			acc[4*k] = acc[4*k+1] = acc[4*k+2] = acc[4*k+3] = 0;
+
+			//overlapping polygons cover more than the pixel, average them
+			if(a > 1) {
+				r /= a;
+				g /= a;
+				b /= a;
+				a  = 1;
+			}
+
+			//add premultiplied destination behind source
+			int   dst = argb[k];
+			float da  = (dst>>>24)/255f*(1 - a);
+			float oa  = a + da;
+			if(oa <= 0) {
+				continue;
+			}
+			r += ((dst>>16) & 0xff)*da;
+			g += ((dst>>8)  & 0xff)*da;
+			b += ( dst      & 0xff)*da;
+			argb[k] = Math.round(oa*255)<<24
+					| Math.min(Math.round(r/oa), 255)<<16
+					| Math.min(Math.round(g/oa), 255)<<8
+					| Math.min(Math.round(b/oa), 255);
+		}
+	}
+}
@@ -0,0 +1,65 @@
+package application;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *Cylindrical Mirror Anamorphosis
+ *Tiled rendering
+ *
+ *Splits the output image into square tiles and renders each tile on its own,
+ *so no raster or snapshot ever has to hold the full output image. Tiles are
+ *rendered one band (row of tiles) at a time, tiles within a band in parallel,
+ *and finished bands are handed to a sink in top to bottom order.
+ *
+ * @author  Garrett R. Mackelprang
+ * @version 1.02
+ * @edited  2026.10.17
+ */
+
+public class TileRenderer {
+
+	//renders its part of the output image into tile (tile.x0/y0 locate the tile),
+	//returns number of polygons filled
+	public interface TileSource {
+		long render(Rasterizer tile);
+	}
+
+	//receives rows [y0, y0+height) of output image, in order
+	public interface BandSink {
+		void band(int[] argb, int y0, int width, int height) throws IOException;
+	}
+
+	public static void render(final int outW, final int outH, final int tileSize, final int background,
+			final TileSource source, BandSink sink) throws IOException {
+
+		final int tilesAcross = (outW + tileSize - 1)/tileSize;
+		final int[] band = new int[outW*Math.min(tileSize, outH)];
+
+		for(int y0=0; y0<outH; y0+=tileSize) {
+			final int bandY = y0;
+			final int tileH = Math.min(tileSize, outH - y0);
+
+			RenderReport.Phase fill = RenderReport.phase("fill");
+			final AtomicLong polygons = new AtomicLong();
+			Parallel.forRange(Transform.threads, 0, tilesAcross, t -> {
+				int x0    = t*tileSize;
+				int tileW = Math.min(tileSize, outW - x0);
+
+				Transform.checkCancelled();
+				Rasterizer tile = new Rasterizer(new int[tileW*tileH], x0, bandY, tileW, tileH);
+				tile.fill(background);
+				polygons.addAndGet(source.render(tile));
+
+				//copy tile rows into band
+				for(int row=0; row<tileH; row++) {
+					System.arraycopy(tile.argb, row*tileW, band, row*outW + x0, tileW);
+				}
+			});
+			fill.pixels((long)outW*tileH).polygons(polygons.get()).close();
+
+			sink.band(band, y0, outW, tileH);
+			Transform.checkpoint(y0 + tileH, outH);
+		}
+	}
+}
@@ -3,21 +3,23 @@ package application;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
-import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
-import javax.imageio.ImageTypeSpecifier;
-import javax.imageio.ImageWriteParam;
-import javax.imageio.ImageWriter;
-import javax.imageio.metadata.IIOMetadata;
-import javax.imageio.metadata.IIOMetadataNode;
-import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 
 import javafx.application.Platform;
+import javafx.concurrent.Task;
 import javafx.embed.swing.SwingFXUtils;
 import javafx.scene.SnapshotParameters;
-import javafx.scene.image.Image;
-import javafx.scene.image.PixelReader;
+import javafx.scene.image.WritableImage;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.Circle;
@@ -45,18 +47,130 @@ import javafx.stage.Stage;
  *   incorrect horizontal offset when converting from pixel coordinates to
  *   Cartesian coordinates.
  *
+ *5) Added scanline render engine. Polygons are filled directly into an ARGB
+ *   raster instead of creating Polygon/Polyline nodes, so RAM usage grows
+ *   with output size rather than input pixel count. HQ/Low RAM select whether
+ *   polygon outlines are drawn. Polygon (scene graph) engine is still available.
+ *
+ *6) Added inverse mapping render engine. Each output pixel is mapped back to
+ *   the picture plane and the input image is sampled there (nearest, bilinear
+ *   or bicubic), so there are no seams between polygon pixels. Output rows
+ *   are rendered in parallel.
+ *
+ *7) Added tiled rendering for the Scanline and Inverse engines. Output is
+ *   rendered in square tiles, so no snapshot or writable image is needed and
+ *   the ~12k x 12k pixel output limit no longer applies.
+ *
+ *8) Output PNG is written by a streaming encoder as rows are rendered, so
+ *   the full output image is no longer held in memory when tiled. DPI is
+ *   written to the pHYs chunk. Save location is now chosen before rendering.
+ *
+ *9) Output grid points are computed in parallel blocks of rows. Thread count
+ *   of all parallel stages can be capped with the threads option.
+ *
+ *10) Added batched anamorphicT kernel. Writes into caller supplied arrays
+ *    with no allocation per point (see KernelBenchmark).
+ *
+ *11) Grid generation is separable (GridMapper). Terms that depend on the grid
+ *    column are computed once per column, so each grid point costs two
+ *    multiply-adds instead of a sqrt and several divisions.
+ *
+ *12) Grid generation uses the left/right mirror symmetry of the picture plane
+ *    (vy = 0). Column terms are only computed for the right half.
+ *
+ *13) Polygon and Scanline engines keep only the two grid rows of the input
+ *    pixel row being drawn (rollingGrid option), so grid memory grows with
+ *    input width instead of width x height x (n+1).
+ *
+ *14) Added headless rendering (renderFile) for the Scanline and Inverse
+ *    engines. Used by the Headless command line entry point, which never
+ *    starts the JavaFX toolkit.
+ *
+ *15) Output grids are not cached on disk: reading a row back is slower
+ *    than computing it (GridMapper), and the offsets and column terms a
+ *    cache could skip cost a few percent of the rows.
+ *
+ *16) Added supersampled anti-aliasing to the Scanline engine (aaSamples
+ *    option, Supersampler). Replaces the HQ outlines with N x N samples per
+ *    pixel, neighboring polygons share edges without gaps.
+ *
+ *17) Resize factor is chosen by RenderPlan from memory and time estimates
+ *    instead of fixed 2000/2400 pixel limits. The GUI and command line may
+ *    also switch to tiles or the Scanline engine when the render would not
+ *    fit in the heap, and show the estimate before rendering.
+ *
+ *18) GUI renders run as a cancellable background Task with progress per
+ *    phase and per row (Progress), so the window stays responsive. The
+ *    program no longer exits after a render and a partial output file is
+ *    deleted when a render is cancelled or fails.
+ *
+ *19) Render phases (decode, resize, grid, offsets, fill, snapshot, encode)
+ *    are Java Flight Recorder events and add up to a JSON report
+ *    (RenderReport).
+ *
+ *20) Input image is decoded once, after reading its size from the header,
+ *    and large images are subsampled by the decoder (ImageReadParam) so the
+ *    full size image is never held in memory.
+ *
+ *21) Input image is resized with a parallel separable filter (Resampler:
+ *    box, area, Mitchell or Lanczos 3, resizeFilter) to exactly the new
+ *    image size, instead of the single threaded Java2D/JavaFX smoothing.
+ *
+ *22) Polygon engine reads the packed input pixels directly (no Color per
+ *    pixel read, transparency is an alpha test) and shares one Color along
+ *    runs of equal pixels.
+ *
+ *23) Runs of up to MAX_RUN equal pixels in a row are filled as one polygon
+ *    that follows every grid point along the run (mergeRuns), in the
+ *    Polygon and Scanline engines. Large polygons are filled with an edge
+ *    table (Rasterizer.Edges).
+ *
+ *24) Input is indexed in 32 x 32 pixel blocks (Occupancy: empty, uniform or
+ *    mixed) before drawing. Empty blocks and rows are skipped without
+ *    reading pixels or computing their grid rows, runs cross uniform blocks
+ *    without pixel compares. Opaque uniform blocks are filled as one polygon
+ *    by the Scanline engine (wholeBlocks).
+ *
+ *25) Output offsets and size are the exact extents of the top and bottom
+ *    grid rows instead of a corner point and a search of the first quarter
+ *    of the top row. The wrapAngle option cuts off input columns whose
+ *    sightlines graze the cylinder (see keptPixels), which bounds the
+ *    output size.
+ *
+ *26) Adaptive grid (meshTolerance): each pixel column gets only as many
+ *    interpolating points as its curved edges need to stay within a chord
+ *    error in output pixels (see edgePoints), instead of n for every column.
+ *
  *KNOWN ISSUES
  *
- *1) Too large of output image breaks writable image class.
+ *1) Too large of output image breaks writable image class (Polygon engine).
  *   Max output dimensions look to be around 12k x 12k pixels
  *
  * @author  Garrett R. Mackelprang
  * @version 1.02
- * @edited  2019.02.16
+ * @edited  2026.10.17
  */
 
 public class Transform {
 	
+	//RENDER ENGINES
+	
+	public static final int SCENE_GRAPH = 0; //Polygon/Polyline nodes saved with a snapshot
+	public static final int SCANLINE    = 1; //polygons filled straight into an ARGB raster
+	public static final int INVERSE     = 2; //output pixels mapped back to the picture plane
+	
+	//grid points per parallel work block
+	private static final int GRID_BLOCK = 1<<14;
+	
+	//tile edge of anti-aliased Scanline engine when tiling is off
+	static final int AA_TILE = 1024;
+	
+	//max input pixels merged into one polygon (see runEnd)
+	static final int MAX_RUN = 64;
+	
+	//max interpolating points per pixel edge of adaptive grid (see edgePoints)
+	static final int MAX_POINTS = 13;
+	
 	//RENDERING OPTIONS
 	
 	//class variables default values
@@ -66,7 +180,17 @@ public class Transform {
 	public static double  vx           = 0;    //viewing distance
 	public static double  vz           = 0;    //viewing height
 	public static int     n            = 0;    //interpolating points
+	public static double  meshTolerance = 0;   //max chord error in output pixels of adaptive grid edges, 0 uses n points on every edge
+	public static double  wrapAngle    = 0;    //max degrees around cylinder from its front that is drawn, 0 draws all
+	public static int     renderEngine = SCANLINE; //SCENE_GRAPH, SCANLINE or INVERSE
+	public static int     filter       = InverseMapper.BILINEAR; //INVERSE engine sampling filter
+	public static int     resizeFilter = Resampler.AREA; //input image resize filter
+	public static int     tileSize     = 0;    //tile edge in output pixels, 0 renders in one piece
+	public static int     threads      = 0;    //max worker threads, 0 uses all processors
+	public static boolean rollingGrid  = true; //compute two grid rows at a time instead of full grid
 	public static boolean hqMethod     = true; //uses more system RAM
+	public static boolean mergeRuns    = true; //fill runs of equal pixels in a row as one polygon
+	public static int     aaSamples    = 0;    //SCANLINE engine anti-aliasing samples per pixel edge, 0 disables
 	public static boolean drawCylinder = true; //show cylinder base in output
 	public static Color   ignoreColor  = null; //set to WHITE to ignore rendering WHITE pixels
 	public static Color   backgndColor = null; //set to TRANSPARENT to preserve input image transparency
@@ -74,21 +198,310 @@ public class Transform {
 	
 	//IMAGE TRANSFORMATION
 	
-	public static void startTransformation(String inputImg) {
+	//chooses output file and shows the render estimate (JavaFX Application
+	//Thread), returns the render to run on a background thread, or null when
+	//the user cancels
+	public static Task<Void> startTransformation(final String inputImg) throws IOException {
 		
-		//GET IMAGE AND RESIZE/SCALE
+		//CHOOSE OUTPUT FILE
 		
-		Image img = new Image(inputImg);
+		//output is written while it renders, so location is chosen first
+		//choose output file name and location (appends parameter values)
+        FileChooser saveFile = new FileChooser();
+        saveFile.setTitle("Save Output");
+        saveFile.setInitialFileName(params);
+        saveFile.getExtensionFilters().addAll(new FileChooser.ExtensionFilter("png","*.png"));
+		final File newImage = saveFile.showSaveDialog(new Stage());
 		
-		//get "native" DPI and new image dimensions
-		double[] imgSize = {img.getWidth(), img.getHeight()};
-        double newImgSize[] = newImgSize(imgSize); //{newImgW,newImgH,dpiN}
+		if(newImage == null) {
+			return null;
+		}
+		
+		//PLAN RENDER
+		
+		//plan resize, engine and tiles for available memory, let user check estimate
+		final File     input   = new File(URI.create(inputImg));
+		final double[] imgSize = imageSize(input); //header only
+		RenderPlan plan = RenderPlan.plan(imgSize, true);
+		if(!Main.confirmPlan(plan.toString())) {
+			return null;
+		}
+		plan.apply();
+        final double newImgSize[] = plan.newImgSize; //{newImgW,newImgH,dpiN}
         
-		//resize image if too large
-		if(newImgSize[0] != imgSize[0]) {
-	        img = new Image(inputImg, newImgSize[0], newImgSize[1], false, true);
+		return new Task<Void>() {
+			@Override
+			protected Void call() throws Exception {
+				final Task<Void> task = this;
+				progress = new Progress() {
+					public void phase(String name) {
+						updateMessage(name);
+						updateProgress(-1, 1);
+					}
+					public void work(long done, long total) {
+						updateProgress(done, total);
+					}
+					public boolean isCancelled() {
+						return task.isCancelled();
+					}
+				};
+				
+				//phase times, see RenderReport.last
+				RenderReport report = RenderReport.start(inputImg);
+				try {
+					//GET IMAGE AND RESIZE/SCALE
+					
+					//decoded once, subsampled while decoding if too large
+					phase("Decoding image");
+					int[] imgPixels = loadPixels(input, newImgSize);
+					
+					//RENDER OUTPUT IMAGE AND SAVE TO FILE
+					
+					//rows are encoded as they are rendered, target DPI is stored in the pHYs chunk
+					//file is opened once the output size is known, a failed render deletes it
+					if(renderEngine == SCENE_GRAPH) {
+						renderSceneGraph(imgPixels, newImgSize, newImage);
+					} else {
+						renderPixels(imgPixels, newImgSize, newImage);
+					}
+					report.finish();
+				} finally {
+					progress = NO_PROGRESS;
+					report.detach();
+				}
+				return null;
+			}
+		};
+	}
+	
+	//PROGRESS
+	
+	//receives progress of a render, render stops when cancelled
+	public interface Progress {
+		void phase(String name);          //render phase started
+		void work(long done, long total); //progress of current phase
+		boolean isCancelled();
+	}
+	
+	//command line and batch renders report nothing and are never cancelled
+	static final Progress NO_PROGRESS = new Progress() {
+		public void phase(String name) {}
+		public void work(long done, long total) {}
+		public boolean isCancelled() {
+			return false;
+		}
+	};
+	
+	//progress of the running GUI render
+	static volatile Progress progress = NO_PROGRESS;
+	
+	//starts a render phase, throws CancellationException when cancelled
+	static void phase(String name) {
+		checkCancelled();
+		progress.phase(name);
+	}
+	
+	//reports progress of current phase, throws CancellationException when cancelled
+	static void checkpoint(long done, long total) {
+		checkCancelled();
+		progress.work(done, total);
+	}
+	
+	static void checkCancelled() {
+		if(progress.isCancelled()) {
+			throw new CancellationException();
+		}
+	}
+	
+	//output file name text from parameter values as entered and options set
+	public static String paramsText(String dpiT, String r, String h, String vx, String vz) {
+		String params = dpiT + "," + r + "," + h + "," + vx + "," + vz;
+		
+		if(meshTolerance > 0) {
+			params += " " + meshTolerance + "tol";
+		} else if(n!=0) {
+			params += " " + n + "n";
+		}
+		if(aaSamples > 1) {
+			params += " AA" + aaSamples;
+		} else {
+			params += hqMethod ? " HQ" : " LoRAM";
+		}
+		if(ignoreColor != null) {
+			params += " IgnWht";
+		}
+		if(drawCylinder) {
+			params += " DrwCyl";
+		}
+		if(backgndColor != null) {
+			params += " PresTrans";
+		}
+		
+		return params;
+	}
+	
+	//HEADLESS RENDERING
+	
+	//reads image size {width, height} from file header without decoding pixels
+	public static double[] imageSize(File input) throws IOException {
+		try (ImageInputStream in = ImageIO.createImageInputStream(input)) {
+			ImageReader reader = imageReader(in, input);
+			try {
+				return new double[] {reader.getWidth(0), reader.getHeight(0)};
+			} finally {
+				reader.dispose();
+			}
+		}
+	}
+	
+	//decodes image file in one pass, keeping every sx-th column and sy-th row
+	//(largest steps that still give at least width x height), so a large
+	//image is reduced while it is decoded and never held at full size
+	static BufferedImage readImage(File input, double width, double height) throws IOException {
+		try (ImageInputStream in = ImageIO.createImageInputStream(input)) {
+			ImageReader reader = imageReader(in, input);
+			try {
+				int sx = Math.max((int)(reader.getWidth(0)/width), 1);
+				int sy = Math.max((int)(reader.getHeight(0)/height), 1);
+				ImageReadParam param = reader.getDefaultReadParam();
+				param.setSourceSubsampling(sx, sy, 0, 0);
+				return reader.read(0, param);
+			} finally {
+				reader.dispose();
+			}
+		}
+	}
+	
+	private static ImageReader imageReader(ImageInputStream in, File input) throws IOException {
+		Iterator<ImageReader> readers = in == null ? null : ImageIO.getImageReaders(in);
+		if(readers == null || !readers.hasNext()) {
+			throw new IOException("unsupported image format: " + input);
+		}
+		ImageReader reader = readers.next();
+		reader.setInput(in, true, true);
+		return reader;
+	}
+	
+	//decodes image file straight to resized pixels (packed ARGB), ignored
+	//color becomes transparent. Decoder keeps at least 2 source pixels per
+	//new pixel, so the resize filter still has samples to average.
+	static int[] loadPixels(File input, double[] newImgSize) throws IOException {
+		BufferedImage img;
+		try (RenderReport.Phase decode = RenderReport.phase("decode")) {
+			img = readImage(input, 2*newImgSize[0], 2*newImgSize[1]);
+			decode.pixels((long)img.getWidth()*img.getHeight());
+		}
+		return decodePixels(img, newImgSize);
+	}
+	
+	//renders input image file with the Scanline or Inverse engine and writes
+	//output PNG file. Image is decoded with ImageIO and nothing here starts the
+	//JavaFX toolkit, so it runs without a display (see Headless).
+	public static void renderFile(File input, File output) throws IOException {
+		
+		//get "native" DPI and new image dimensions from header
+		double newImgSize[] = newImgSize(imageSize(input)); //{newImgW,newImgH,dpiN}
+		
+		renderPixels(loadPixels(input, newImgSize), newImgSize, output);
+	}
+	
+	//renders resized input pixels (packed ARGB) with a raster engine, PNG is
+	//written to output as rows are rendered, output is deleted if the render fails
+	static void renderPixels(int[] imgPixels, double[] newImgSize, File output) throws IOException {
+		
+		if(renderEngine == SCENE_GRAPH) {
+			throw new IOException("Polygon engine needs the JavaFX toolkit");
 		}
 		
+		int[] outSize = new int[2];
+		TileRenderer.TileSource engine = rasterEngine(imgPixels, newImgSize, outSize);
+		
+		phase("Rendering");
+		PngWriter png = PngWriter.create(output, outSize[0], outSize[1], alphaOutput(), dpiT);
+		boolean done = false;
+		try {
+			renderRaster(engine, outSize, png);
+			png.close();
+			done = true;
+		} finally {
+			if(!done) {
+				png.discard(output);
+			}
+		}
+	}
+	
+	//sets up the Scanline or Inverse engine for resized input pixels,
+	//outSize receives output image size {width, height}
+	static TileRenderer.TileSource rasterEngine(int[] imgPixels, double[] newImgSize, int[] outSize) {
+		
+		//SET PARAMETER VALUES
+		
+		//image scaling parameters
+		final double dpiN = newImgSize[2]; //native image DPI
+		final double s    = dpiN/dpiT;     //scale to target DPI
+		
+		//physical parameters
+		final double rPhy  = dpiN*r;
+		final double vxPhy = dpiN*vx;
+		final double vzPhy = dpiN*vz;
+		
+		//GENERATE GRID POINTS
+		
+		phase("Generating grid");
+		
+		//picture plane / Cartesian yz-plane, 2D array row0: y and row1: z
+		double[][] yzGrid;
+		try (RenderReport.Phase grid = RenderReport.phase("grid")) {
+			yzGrid = yzGrid(newImgSize);
+			grid.pixels(yzGrid[0].length + yzGrid[1].length);
+		}
+		double[] offsets; //{minX,minY}
+		try (RenderReport.Phase bounds = RenderReport.phase("offsets")) {
+			offsets = offsets(yzGrid, rPhy, vxPhy, vzPhy, newImgSize);
+			System.arraycopy(outputSize(yzGrid, rPhy, vxPhy, vzPhy, offsets[0], offsets[1], s), 0, outSize, 0, 2);
+			bounds.pixels((long)outSize[0]*outSize[1]);
+		}
+		double minX = offsets[0];
+		double minY = offsets[1];
+		
+		//pixels beyond wrapAngle are not drawn
+		cullWrap(imgPixels, newImgSize, yzGrid, rPhy, vxPhy);
+		
+		//blocks of visible input pixels, empty blocks are skipped while drawing
+		Occupancy occ = null;
+		if(renderEngine != INVERSE) {
+			try (RenderReport.Phase index = RenderReport.phase("index")) {
+				occ = new Occupancy(imgPixels, (int)newImgSize[0], (int)newImgSize[1]);
+				index.pixels((long)newImgSize[0]*(long)newImgSize[1]);
+			}
+		}
+		
+		//SET UP ENGINE
+		
+		//column terms, output grid and band index are grid work too
+		try (RenderReport.Phase grid = RenderReport.phase("grid")) {
+			grid.pixels((long)yzGrid[0].length*yzGrid[1].length);
+			if(renderEngine == INVERSE) {
+				return inverseEngine(imgPixels, newImgSize, rPhy, vxPhy, vzPhy, minX, minY, s);
+			}
+			
+			//output grid points, full grid or rows computed while rendering
+			GridMapper mapper = new GridMapper(yzGrid[0], rPhy, vxPhy, vzPhy, minX, minY, s);
+			double[][] xyGrid = rollingGrid ? null : xyGrid(yzGrid, mapper, newImgSize, occ);
+			return scanlineEngine(imgPixels, occ, newImgSize, yzGrid, mapper, xyGrid, outSize, minX, minY, s);
+		}
+	}
+	
+	//output keeps alpha channel when background is not opaque
+	static boolean alphaOutput() {
+		return backgndColor != null && backgndColor.getOpacity() < 1;
+	}
+	
+	//RENDER ENGINES
+	
+	//scene graph engine: one Polygon node per input pixel, saved with a snapshot
+	private static void renderSceneGraph(int[] imgPixels, double[] newImgSize, File outputFile) throws IOException {
+		
 		//SET PARAMETER VALUES
 		
 		//image scaling parameters
@@ -105,95 +518,108 @@ public class Transform {
         //NOTE: x, y, and z refer to orientation of 3D Cartesian coordinates
         //      Cartesian y maps to pixel x, Cartesian x maps to pixel y 
         
+        phase("Generating grid");
+        RenderReport.Phase timer = RenderReport.phase("grid");
+        
         //generate input grid points
 		//picture plane / Cartesian yz-plane
         //2D array row0: y and row1: z
         double[][] yzGrid = yzGrid(newImgSize);
+        timer.pixels(yzGrid[0].length + yzGrid[1].length).close();
         
-        //find minimum x element of output image
-        //minimum x in output image is mapped to top left point of the picture plane
-        double[] temp = anamorphicT(rPhy, vxPhy, vzPhy, yzGrid[0][0], yzGrid[1][0]);
-        double minX = Math.floor(temp[0]);
+        timer = RenderReport.phase("offsets");
+        double[] offsets  = offsets(yzGrid, rPhy, vxPhy, vzPhy, newImgSize); //{minX,minY}
+        double minX = offsets[0];
+        double minY = offsets[1];
+        timer.close();
         
-        //keep cylinder visible in output
-        if(minX > -Math.ceil(rPhy) && drawCylinder) {
-            minX = -Math.ceil(rPhy);
-        }
+        //pixels beyond wrapAngle are not drawn
+        cullWrap(imgPixels, newImgSize, yzGrid, rPhy, vxPhy);
         
-        //find minimum y element of output image
-        //minimum y in output image is mapped to a point that is between the top left
-        //and first quarter of the picture plane. Index i: 0<=i<=0.25*(length-1)
-        double minY = Double.MAX_VALUE;
-        for(int i=0; i<(int)Math.ceil(0.25*newImgSize[0]*(n+1)); i++) {
-        	temp = anamorphicT(rPhy, vxPhy, vzPhy, yzGrid[0][i], yzGrid[1][0]);
-            if(temp[1] < minY) {
-                minY = temp[1];
-            }
-        }
-        minY = Math.floor(minY);
+        //blocks of visible input pixels, empty blocks are skipped while drawing
+        timer = RenderReport.phase("index");
+        int imgW = (int)newImgSize[0];
+        Occupancy occ = new Occupancy(imgPixels, imgW, (int)newImgSize[1]);
+        timer.pixels((long)(newImgSize[0]*newImgSize[1])).close();
         
-        //generate output grid points
-        //anamorphic image / Cartesian xy-plane
-        //2D array row0: x and row1: y
-        double[][] xyGrid = new double[2][yzGrid[0].length*yzGrid[1].length];
-        for(int i=0; i<yzGrid[1].length; i++) {
-            int k = i*yzGrid[0].length;
-            for(int j=0; j<yzGrid[0].length; j++) {
-                temp = anamorphicT(rPhy, vxPhy, vzPhy, yzGrid[0][j], yzGrid[1][i]);
-                xyGrid[0][k] = (temp[0] - minX)/s; //remove x offset
-                xyGrid[1][k] = (temp[1] - minY)/s; //remove y offset
-                k++;
-            }
-        }
-        temp = null; //ready variable for garbage collection
+        //output grid points, full grid or rows computed while drawing
+        timer = RenderReport.phase("grid");
+        GridMapper mapper = new GridMapper(yzGrid[0], rPhy, vxPhy, vzPhy, minX, minY, s);
+        double[][] xyGrid = rollingGrid ? null : xyGrid(yzGrid, mapper, newImgSize, occ);
+        timer.pixels((long)yzGrid[0].length*yzGrid[1].length).close();
         
         //CONSTRUCT POLYGONS
         
+        phase("Drawing polygons");
+        timer = RenderReport.phase("fill");
         BorderPane output = new BorderPane();
         
-        //read pixels from resized input image
-        PixelReader imgPixel = img.getPixelReader();
+        //resized input pixels are packed ARGB, ignored color is already transparent
         
         //declare loop variables
-        Color pixelColor;
+        int argb;
+        int colorArgb = 0;       //color of pixelColor, reused along runs of equal pixels
+        Color pixelColor = null;
         Polygon polyPixel;
         Polyline polyLine;
-        double[] polyPoints = new double[4*(n+2)];
+        int[] col = pixelColumns(yzGrid);
+        double[] polyPoints = new double[4*runCapacity(col)];
+        int end;
         int l;
         int startR;
         int stopR;
         int stopL;
         int startL;
         
+        //output grid rows of current pixel row
+        int rowLen = yzGrid[0].length;
+        GridMapper.Window window = xyGrid == null ? mapper.window(yzGrid[1]) : null;
+        double[][] grid = xyGrid;
+        int gi;
+        
         //loop generates a polygon "pixel" for each pixel of the input image and
         //fills the polygon with the associated color of the input image pixel
+        //(neighboring pixels of equal color share one polygon, see runEnd)
         
         if(hqMethod) { //render method 1 (better quality, uses more RAM)
         	for(int i=0; i<newImgSize[1]; i++) {     //pixel row selector (y)
-        		for(int j=0; j<newImgSize[0]; j++) { //pixel column selector (x)
-        			pixelColor = imgPixel.getColor(j, i);
-        			if(!pixelColor.equals(Color.TRANSPARENT) && !pixelColor.equals(ignoreColor)) {
+        		checkpoint(i, (long)newImgSize[1]);
+        		if(occ.rowEmpty(i)) {
+        			continue;
+        		}
+        		if(window != null) {
+        			grid = window.rows(i);
+        		}
+        		gi = window == null ? i : 0;
+        		for(int j=occ.nextVisible(i, 0); j<imgW; j=occ.nextVisible(i, end)) { //pixel column selector (x), a run at a time
+        			argb = imgPixels[i*imgW + j];
+        			end  = runEnd(imgPixels, imgW, occ, grid, rowLen, col, gi, i, j);
+        			if(argb>>>24 != 0) {
+        				if(pixelColor == null || argb != colorArgb) {
+        					pixelColor = toColor(argb);
+        					colorArgb  = argb;
+        				}
             			l = 0; //polyPoints index
-            			startR = j*(n + 1) + i*yzGrid[0].length;
-           				stopR  = startR + n + 1;
+            			startR = col[j] + gi*rowLen;
+           				stopR  = col[end] + gi*rowLen;
            				for(int k=startR; k<=stopR; k++) {  //sweep right (top points)
-           					polyPoints[l]   = xyGrid[1][k]; //x coordinate
-           					polyPoints[l+1] = xyGrid[0][k]; //y coordinate
+           					polyPoints[l]   = grid[1][k]; //x coordinate
+           					polyPoints[l+1] = grid[0][k]; //y coordinate
            					l += 2;
                			}
-           				stopL  = j*(n + 1) + (i+1)*yzGrid[0].length;
-           				startL = stopL + n + 1;
+           				stopL  = col[j] + (gi+1)*rowLen;
+           				startL = col[end] + (gi+1)*rowLen;
             			for(int k=startL; k>=stopL; k--) {  //sweep left (bottom points)
-            				polyPoints[l]   = xyGrid[1][k]; //x coordinate
-            				polyPoints[l+1] = xyGrid[0][k]; //y coordinate
+            				polyPoints[l]   = grid[1][k]; //x coordinate
+            				polyPoints[l+1] = grid[0][k]; //y coordinate
             				l += 2;
                 		}
-            			polyPixel = new Polygon(polyPoints);
+            			polyPixel = new Polygon(Arrays.copyOf(polyPoints, l));
            				polyPixel.setFill(pixelColor);
            				polyPixel.setStroke(pixelColor);
            				polyPixel.setStrokeType(StrokeType.INSIDE);
            				polyPixel.setStrokeWidth(10);
-           				polyLine = new Polyline(polyPoints);
+           				polyLine = new Polyline(Arrays.copyOf(polyPoints, l));
            				polyLine.setStroke(pixelColor);
            				output.getChildren().addAll(polyPixel, polyLine);
            			}
@@ -201,25 +627,38 @@ public class Transform {
            	}
         } else { //render method 2 (uses less RAM)
             for(int i=0; i<newImgSize[1]; i++) {     //pixel row selector (y)
-            	for(int j=0; j<newImgSize[0]; j++) { //pixel column selector (x)
-            		pixelColor = imgPixel.getColor(j, i);
-            		if(!pixelColor.equals(Color.TRANSPARENT) && !pixelColor.equals(ignoreColor)) {
+            	checkpoint(i, (long)newImgSize[1]);
+            	if(occ.rowEmpty(i)) {
+            		continue;
+            	}
+            	if(window != null) {
+            		grid = window.rows(i);
+            	}
+            	gi = window == null ? i : 0;
+            	for(int j=occ.nextVisible(i, 0); j<imgW; j=occ.nextVisible(i, end)) { //pixel column selector (x), a run at a time
+            		argb = imgPixels[i*imgW + j];
+            		end  = runEnd(imgPixels, imgW, occ, grid, rowLen, col, gi, i, j);
+            		if(argb>>>24 != 0) {
+            			if(pixelColor == null || argb != colorArgb) {
+            				pixelColor = toColor(argb);
+            				colorArgb  = argb;
+            			}
             			l = 0; //polyPoints index
-            			startR = j*(n + 1) + i*yzGrid[0].length;
-           				stopR  = startR + n + 1;
+            			startR = col[j] + gi*rowLen;
+           				stopR  = col[end] + gi*rowLen;
            				for(int k=startR; k<=stopR; k++) {  //sweep right (top points)
-           					polyPoints[l]   = xyGrid[1][k]; //x coordinate
-           					polyPoints[l+1] = xyGrid[0][k]; //y coordinate
+           					polyPoints[l]   = grid[1][k]; //x coordinate
+           					polyPoints[l+1] = grid[0][k]; //y coordinate
            					l += 2;
                			}
-           				stopL  = j*(n + 1) + (i+1)*yzGrid[0].length;
-           				startL = stopL + n + 1;
+           				stopL  = col[j] + (gi+1)*rowLen;
+           				startL = col[end] + (gi+1)*rowLen;
             			for(int k=startL; k>=stopL; k--) {  //sweep left (bottom points)
-            				polyPoints[l]   = xyGrid[1][k]; //x coordinate
-            				polyPoints[l+1] = xyGrid[0][k]; //y coordinate
+            				polyPoints[l]   = grid[1][k]; //x coordinate
+            				polyPoints[l+1] = grid[0][k]; //y coordinate
             				l += 2;
                 		}
-            			polyPixel = new Polygon(polyPoints);
+            			polyPixel = new Polygon(Arrays.copyOf(polyPoints, l));
            				polyPixel.setSmooth(false);
            				polyPixel.setFill(pixelColor);
            				//polyPixel.setStrokeType(StrokeType.INSIDE);
@@ -239,142 +678,652 @@ public class Transform {
         	cylinderBase.setStroke(Color.BLACK);
         	output.getChildren().add(cylinderBase);
         }
-        
-        //SAVE OUTPUT TO FILE
+        timer.pixels((long)(newImgSize[0]*newImgSize[1])).polygons(output.getChildren().size()).close();
         
         //set snapshot fill color 
         SnapshotParameters snapshotParam = new SnapshotParameters();
         snapshotParam.setFill(backgndColor);
         
-        //convert snapshot to buffered image
-        BufferedImage outputImg = SwingFXUtils.fromFXImage(output.snapshot(snapshotParam, null), null);
+        //convert snapshot to buffered image (snapshot runs on JavaFX Application Thread)
+        phase("Taking snapshot");
+        timer = RenderReport.phase("snapshot");
+        final BorderPane scene = output;
+        FutureTask<WritableImage> snapshot = new FutureTask<>(() -> scene.snapshot(snapshotParam, null));
+        Platform.runLater(snapshot);
+        BufferedImage outputImg;
+        try {
+        	outputImg = SwingFXUtils.fromFXImage(snapshot.get(), null);
+        } catch (InterruptedException | ExecutionException e) {
+        	throw new IOException("snapshot failed", e);
+        }
+        timer.pixels((long)outputImg.getWidth()*outputImg.getHeight()).close();
+        output = null; //ready variables for garbage collection
+        xyGrid = null;
+        
+        //SAVE TO FILE
         
-    	//set DPI metadata
-    	ImageWriter writer = ImageIO.getImageWritersByFormatName("png").next();
+        phase("Saving");
+        PngWriter png = PngWriter.create(outputFile, outputImg.getWidth(), outputImg.getHeight(), alphaOutput(), dpiT);
+        boolean done = false;
+        try {
+        	writeImage(outputImg, png);
+        	png.close();
+        	done = true;
+        } finally {
+        	if(!done) {
+        		png.discard(outputFile);
+        	}
+        }
+	}
+	
+	//scanline engine: fills the same polygons into a packed ARGB raster
+	//(xyGrid is null when grid rows are computed by a window while drawing)
+	private static TileRenderer.TileSource scanlineEngine(final int[] imgPixels, final Occupancy occ, double[] newImgSize,
+			final double[][] yzGrid, final GridMapper mapper, final double[][] xyGrid, int[] outSize,
+			final double minX, final double minY, final double s) {
 		
-    	ImageWriteParam writeParam = writer.getDefaultWriteParam();
-    	ImageTypeSpecifier typeSpecifier = ImageTypeSpecifier.createFromBufferedImageType(BufferedImage.TYPE_INT_RGB);
+		final int imgW   = (int)newImgSize[0];
+		final int imgH   = (int)newImgSize[1];
+		final int rowLen = yzGrid[0].length;
+		final int[] col  = pixelColumns(yzGrid);
 		
-    	IIOMetadata metadata = writer.getDefaultImageMetadata(typeSpecifier, writeParam);
-
-    	IIOMetadataNode horiz = new IIOMetadataNode("HorizontalPixelSize");
-    	horiz.setAttribute("value", Double.toString(dpiT/25.4));
-
-    	IIOMetadataNode vert = new IIOMetadataNode("VerticalPixelSize");
-    	vert.setAttribute("value", Double.toString(dpiT/25.4));
-
-    	IIOMetadataNode dim = new IIOMetadataNode("Dimension");
-    	dim.appendChild(horiz);
-    	dim.appendChild(vert);
-
-    	IIOMetadataNode root = new IIOMetadataNode("javax_imageio_1.0");
-    	root.appendChild(dim);
-    	
-    	//choose output file name and location (appends parameter values)
-        FileChooser saveFile = new FileChooser();
-        saveFile.setTitle("Save Output");
-        saveFile.setInitialFileName(params);
-        saveFile.getExtensionFilters().addAll(new FileChooser.ExtensionFilter("png","*.png"));
-		File newImage = saveFile.showSaveDialog(new Stage());
-		
-		//merge metadata and save output file
-		if(newImage != null) {
-            try {
-            	metadata.mergeTree("javax_imageio_1.0", root);
-            	ImageOutputStream stream = ImageIO.createImageOutputStream(newImage);
-            	writer.setOutput(stream);
-            	writer.write(metadata, new IIOImage(outputImg, null, metadata), writeParam);
-            	stream.close();
-            } catch (IOException e) {
-				e.printStackTrace();
+		//uniform blocks filled as one polygon
+		if(mergeRuns) {
+			wholeBlocks(occ, mapper, yzGrid[1], col, imgW, imgH);
+		}
+		
+		//input pixels reaching each band of tiles
+		final int   tile    = tileEdge();
+		final int[][] bands = tile > 0 ? bandIndex(imgPixels, occ, imgW, imgH, yzGrid, col, mapper, xyGrid, outSize[1], tile) : null;
+		
+		return new TileRenderer.TileSource() {
+			public long render(Rasterizer output) {
+				double[] polyPoints = new double[4*runCapacity(col)];
+				double[][] blockGrid = new double[2][2*rowLen];
+				long polygons = 0;
+				
+				//each tile has its own window and sample buffer, tiles render in parallel
+				GridMapper.Window window = xyGrid == null ? mapper.window(yzGrid[1]) : null;
+				Supersampler aa = aaSamples > 1 ? new Supersampler(output, aaSamples) : null;
+				double[][] grid = xyGrid;
+				
+				if(bands == null) {
+					for(int i=0; i<imgH; i++) {     //pixel row selector (y)
+						checkpoint(i, imgH);
+						if(occ.rowEmpty(i)) {
+							continue;
+						}
+						if(i%Occupancy.BLOCK == 0) { //whole blocks of block row first
+							for(int j=occ.nextWhole(i, 0, imgW); j<imgW; j=occ.nextWhole(i, j + Occupancy.BLOCK, imgW)) {
+								if(fillBlock(output, aa, mapper, yzGrid[1], imgPixels, imgW, imgH, col, i, j, blockGrid, polyPoints)) {
+									polygons++;
+								}
+							}
+						}
+						if(window != null) {
+							grid = window.rows(i);
+						}
+						int gi = window == null ? i : 0;
+						for(int j=occ.nextVisible(i, 0), end; j<imgW; j=occ.nextVisible(i, end)) { //pixel column selector (x), a run at a time
+							end = runEnd(imgPixels, imgW, occ, grid, rowLen, col, gi, i, j);
+							if(fillRun(output, aa, grid, rowLen, col, gi, j, end, imgPixels[i*imgW + j], polyPoints)) {
+								polygons++;
+							}
+						}
+					}
+				} else {
+					//band lists are in row order, so the window moves down one row at a time
+					for(int k : bands[output.y0/tile]) {
+						if(k < 0) { //whole block
+							if(fillBlock(output, aa, mapper, yzGrid[1], imgPixels, imgW, imgH, col, (-1 - k)/imgW, (-1 - k)%imgW, blockGrid, polyPoints)) {
+								polygons++;
+							}
+							continue;
+						}
+						int i  = k/imgW;
+						int j  = k%imgW;
+						if(window != null) {
+							grid = window.rows(i);
+						}
+						int gi = window == null ? i : 0;
+						if(fillRun(output, aa, grid, rowLen, col, gi, j, runEnd(imgPixels, imgW, occ, grid, rowLen, col, gi, i, j), imgPixels[k], polyPoints)) {
+							polygons++;
+						}
+					}
+				}
+				
+				//show base of cylinder in output image (drawn over polygons)
+				if(aa != null) {
+					aa.resolve();
+					if(drawCylinder) {
+						aa.strokeCircle(-minY/s, -minX/s, r*dpiT, 0xff000000);
+						aa.resolve();
+					}
+				} else if(drawCylinder) {
+					output.strokeCircle(-minY/s, -minX/s, r*dpiT, 0xff000000);
+				}
+				return polygons;
+			}
+		};
+	}
+	
+	//fills polygon of input pixels (i,j0) to (i,j1-1) if it reaches raster, into
+	//the sample buffer when anti-aliasing (aa not null), returns true if filled
+	private static boolean fillRun(Rasterizer output, Supersampler aa, double[][] xyGrid, int rowLen, int[] col, int i, int j0, int j1,
+			int pixelArgb, double[] polyPoints) {
+		int nPts = runPoints(xyGrid, rowLen, col, i, j0, j1, polyPoints);
+		double minU = Double.MAX_VALUE;
+		double maxU = -Double.MAX_VALUE;
+		for(int l=0; l<2*nPts; l+=2) {
+			minU = Math.min(minU, polyPoints[l]);
+			maxU = Math.max(maxU, polyPoints[l]);
+		}
+		if(maxU < output.x0 - 1 || minU > output.x0 + output.width + 1) {
+			return false;
+		}
+		if(aa != null) { //samples split shared edges, no outline needed
+			aa.fillPolygon(polyPoints, nPts, pixelArgb);
+			return true;
+		}
+		output.fillPolygon(polyPoints, nPts, pixelArgb);
+		if(hqMethod) { //outline closes gaps between neighboring polygons
+			output.strokePolygon(polyPoints, nPts, pixelArgb);
+		}
+		return true;
+	}
+	
+	//lists first pixels (row major index) of visible runs whose polygons reach each band of tiles
+	private static int[][] bandIndex(int[] imgPixels, Occupancy occ, int imgW, int imgH, double[][] yzGrid, int[] col,
+			GridMapper mapper, double[][] xyGrid, int outH, int tileSize) {
+		int nBands = (outH + tileSize - 1)/tileSize;
+		int[] count = new int[nBands];
+		int rowLen = yzGrid[0].length;
+		GridMapper.Window window = xyGrid == null ? mapper.window(yzGrid[1]) : null;
+		double[][] grid = xyGrid;
+		double[][] blockGrid = new double[2][2*rowLen];
+		
+		//first pass counts, second pass fills (keeps drawing order within band)
+		int[][] bands = new int[nBands][];
+		for(int pass=0; pass<2; pass++) {
+			for(int i=0; i<imgH; i++) {
+				if(occ.rowEmpty(i)) {
+					continue;
+				}
+				if(i%Occupancy.BLOCK == 0) { //whole blocks of block row first, entries are -1 - first pixel
+					for(int j=occ.nextWhole(i, 0, imgW); j<imgW; j=occ.nextWhole(i, j + Occupancy.BLOCK, imgW)) {
+						int k0 = col[j];
+						int k1 = col[Math.min(j + Occupancy.BLOCK, imgW)];
+						mapper.points(yzGrid[1][i], k0, k1, blockGrid[0], blockGrid[1], 0);
+						mapper.points(yzGrid[1][Math.min(i + Occupancy.BLOCK, imgH)], k0, k1, blockGrid[0], blockGrid[1], rowLen);
+						addToBands(bands, count, pass, -1 - (i*imgW + j), blockGrid, rowLen, 0, k0, k1, tileSize);
+					}
+				}
+				if(window != null) {
+					grid = window.rows(i);
+				}
+				int gi = window == null ? i : 0;
+				for(int j=occ.nextVisible(i, 0), end; j<imgW; j=occ.nextVisible(i, end)) {
+					end = runEnd(imgPixels, imgW, occ, grid, rowLen, col, gi, i, j);
+					addToBands(bands, count, pass, i*imgW + j, grid, rowLen, gi, col[j], col[end], tileSize);
+				}
+			}
+			if(pass == 0) {
+				for(int b=0; b<nBands; b++) {
+					bands[b] = new int[count[b]];
+					count[b] = 0;
+				}
+			}
+		}
+		
+		return bands;
+	}
+	
+	//counts (pass 0) or adds (pass 1) polygon entry to the bands of tiles it reaches,
+	//vertical extent from its top and bottom points (columns k0..k1 of grid rows gi and gi+1)
+	private static void addToBands(int[][] bands, int[] count, int pass, int entry,
+			double[][] grid, int rowLen, int gi, int k0, int k1, int tileSize) {
+		double minV = Double.MAX_VALUE;
+		double maxV = -Double.MAX_VALUE;
+		for(int k=k0; k<=k1; k++) {
+			double top = grid[0][k + gi*rowLen];
+			double bot = grid[0][k + (gi+1)*rowLen];
+			minV = Math.min(minV, Math.min(top, bot));
+			maxV = Math.max(maxV, Math.max(top, bot));
+		}
+		int first = Math.max((int)Math.floor((minV - 1)/tileSize), 0);
+		int last  = Math.min((int)Math.floor((maxV + 1)/tileSize), count.length - 1);
+		for(int b=first; b<=last; b++) {
+			if(pass == 0) {
+				count[b]++;
+			} else {
+				bands[b][count[b]++] = entry;
 			}
 		}
+	}
+	
+	//UNIFORM BLOCKS
+	
+	//marks opaque uniform blocks whose quads all face the same way WHOLE,
+	//they are filled as one polygon. Translucent blocks keep their runs, whose
+	//overlapping fills and outlines blend more than once. The determinant of the mapping is linear in the
+	//row term q along each grid column (see GridMapper), so quads of the
+	//block's top and bottom pixel rows facing the same way cover the rows
+	//between them too.
+	static void wholeBlocks(final Occupancy occ, final GridMapper mapper, final double[] pz, final int[] col,
+			final int imgW, final int imgH) {
+		final int rowLen = mapper.columns();
+		Parallel.forRange(threads, 0, occ.blocksH(), by -> {
+			int y0 = by*Occupancy.BLOCK;
+			int y1 = Math.min(y0 + Occupancy.BLOCK, imgH);
+			double[][] grid = null; //grid rows y0, y0+1, y1-1 and y1
+			for(int bx=0; bx<occ.blocksW(); bx++) {
+				if(occ.block(by, bx) != Occupancy.UNIFORM || occ.color(by, bx)>>>24 != 0xff) {
+					continue;
+				}
+				if(grid == null) {
+					grid = new double[2][4*rowLen];
+				}
+				int x0 = bx*Occupancy.BLOCK;
+				int x1 = Math.min(x0 + Occupancy.BLOCK, imgW);
+				mapper.points(pz[y0],     col[x0], col[x1], grid[0], grid[1], 0);
+				mapper.points(pz[y0 + 1], col[x0], col[x1], grid[0], grid[1], rowLen);
+				mapper.points(pz[y1 - 1], col[x0], col[x1], grid[0], grid[1], 2*rowLen);
+				mapper.points(pz[y1],     col[x0], col[x1], grid[0], grid[1], 3*rowLen);
+				boolean facing = quadFacing(grid, rowLen, col, 0, x0);
+				boolean same   = true;
+				for(int j=x0; j<x1 && same; j++) {
+					same = quadFacing(grid, rowLen, col, 0, j) == facing && quadFacing(grid, rowLen, col, 2, j) == facing;
+				}
+				if(same) {
+					occ.fillWhole(by, bx);
+				}
+			}
+		});
+	}
+	
+	//fills WHOLE block with first pixel (y0,x0) as one polygon: its top and
+	//bottom grid rows, joined by the straight grid columns at its sides
+	private static boolean fillBlock(Rasterizer output, Supersampler aa, GridMapper mapper, double[] pz, int[] imgPixels,
+			int imgW, int imgH, int[] col, int y0, int x0, double[][] blockGrid, double[] polyPoints) {
+		int rowLen = mapper.columns();
+		int x1 = Math.min(x0 + Occupancy.BLOCK, imgW);
+		int y1 = Math.min(y0 + Occupancy.BLOCK, imgH);
+		mapper.points(pz[y0], col[x0], col[x1], blockGrid[0], blockGrid[1], 0);
+		mapper.points(pz[y1], col[x0], col[x1], blockGrid[0], blockGrid[1], rowLen);
+		return fillRun(output, aa, blockGrid, rowLen, col, 0, x0, x1, imgPixels[y0*imgW + x0], polyPoints);
+	}
 	
-		//CLOSE PROGRAM
+	//inverse engine: samples input image at picture plane point of each output pixel
+	private static TileRenderer.TileSource inverseEngine(int[] imgPixels, double[] newImgSize,
+			double rPhy, double vxPhy, double vzPhy, final double minX, final double minY, final double s) {
+		
+		final InverseMapper mapper = new InverseMapper(imgPixels, (int)newImgSize[0], (int)newImgSize[1],
+				rPhy, vxPhy, vzPhy, minX, minY, s, filter);
 		
-		//temporary solution to high memory usage
-		Platform.exit();
+		return new TileRenderer.TileSource() {
+			public long render(Rasterizer output) {
+				mapper.render(output, tileEdge() <= 0);
+				
+				//show base of cylinder in output image
+				if(drawCylinder) {
+					output.strokeCircle(-minY/s, -minX/s, r*dpiT, 0xff000000);
+				}
+				return 0; //samples the input, no polygons
+			}
+		};
 	}
 	
-	private static double[] newImgSize(double[] imgSize) {
+	//renders raster engine output in one piece, or tile by tile if tiled (see tileEdge)
+	static void renderRaster(TileRenderer.TileSource engine, int[] outSize,
+			TileRenderer.BandSink sink) throws IOException {
+		int background = backgndColor == null ? 0xffffffff : toArgb(backgndColor);
+		int tileSize   = tileEdge();
+		
+		if(tileSize <= 0) {
+			Rasterizer output = new Rasterizer(outSize[0], outSize[1]);
+			try (RenderReport.Phase fill = RenderReport.phase("fill")) {
+				output.fill(background);
+				fill.pixels((long)outSize[0]*outSize[1]).polygons(engine.render(output));
+			}
+			sink.band(output.argb, 0, outSize[0], outSize[1]);
+		} else {
+			TileRenderer.render(outSize[0], outSize[1], tileSize, background, engine, sink);
+		}
+	}
+	
+	//tile edge of raster engines, 0 renders in one piece. Anti-aliased
+	//Scanline engine is always tiled, its sample buffer is 4 floats per pixel.
+	private static int tileEdge() {
+		if(tileSize <= 0 && aaSamples > 1 && renderEngine == SCANLINE) {
+			return AA_TILE;
+		}
+		return tileSize;
+	}
+	
+	//passes buffered image to sink in bands of rows
+	private static void writeImage(BufferedImage outputImg, TileRenderer.BandSink sink) throws IOException {
+		int w = outputImg.getWidth();
+		int h = outputImg.getHeight();
+		int bandH = Math.max(Math.min(h, (1<<20)/w), 1);
+		int[] band = new int[w*bandH];
+		for(int y0=0; y0<h; y0+=bandH) {
+			int rows = Math.min(bandH, h - y0);
+			outputImg.getRGB(0, y0, w, rows, band, 0, w);
+			sink.band(band, y0, w, rows);
+			checkpoint(y0 + rows, h);
+		}
+	}
+	
+	//output image dimensions {width, height} in output pixels
+	static int[] outputSize(double[][] yzGrid, double rPhy, double vxPhy, double vzPhy,
+			double minX, double minY, double s) {
+		
+		//extents of drawn grid points
+		double[] bounds = bounds(yzGrid, rPhy, vxPhy, vzPhy);
+		double maxW = (bounds[3] - minY)/s; //pixel x is Cartesian y
+		double maxH = (bounds[2] - minX)/s;
+		
+		//keep cylinder base inside output
+		if(drawCylinder) {
+			maxW = Math.max(maxW, -minY/s + r*dpiT + 0.5);
+			maxH = Math.max(maxH, -minX/s + r*dpiT + 0.5);
+		}
+		
+		return new int[] {Math.max((int)Math.ceil(maxW), 1), Math.max((int)Math.ceil(maxH), 1)};
+	}
+	
+	//Cartesian extents {minX, minY, maxX, maxY} of the grid points of drawn
+	//pixel columns. A picture plane column maps to a line (see GridMapper),
+	//so its extremes are its end points on the top and bottom grid rows.
+	static double[] bounds(double[][] yzGrid, double rPhy, double vxPhy, double vzPhy) {
+		int[] kept  = keptPixels(yzGrid, rPhy, vxPhy);
+		int   first = (int)yzGrid[2][kept[0]];
+		int   len   = (int)yzGrid[2][kept[1]] - first + 1;
+		double[] py = Arrays.copyOfRange(yzGrid[0], first, first + len);
+		double[] pz = new double[len];
+		double[] x  = new double[len];
+		double[] y  = new double[len];
+		double[] bounds = {Double.MAX_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+		for(int i=0; i<yzGrid[1].length; i+=Math.max(yzGrid[1].length-1, 1)) {
+			Arrays.fill(pz, yzGrid[1][i]);
+			anamorphicT(rPhy, vxPhy, vzPhy, py, pz, x, y, len);
+			for(int k=0; k<len; k++) {
+				bounds[0] = Math.min(bounds[0], x[k]);
+				bounds[1] = Math.min(bounds[1], y[k]);
+				bounds[2] = Math.max(bounds[2], x[k]);
+				bounds[3] = Math.max(bounds[3], y[k]);
+			}
+		}
+		return bounds;
+	}
+	
+	//input pixel columns {first, last + 1} that are drawn. With wrapAngle set,
+	//only pixels whose sightlines meet the cylinder within wrapAngle of the
+	//point facing the viewer: near the tangent the reflection grazes the
+	//mirror and the pixel is smeared far around the back of the cylinder.
+	static int[] keptPixels(double[][] yzGrid, double rPhy, double vxPhy) {
+		int imgW  = yzGrid[2].length - 1;
+		int first = 0;
+		int last  = imgW;
+		if(wrapAngle > 0) {
+			//sightline through cylinder point at angle phi meets picture plane at
+			//|py| = vx*r*sin(phi)/(vx - r*cos(phi)), up to the tangent acos(r/vx)
+			double phi   = Math.min(Math.toRadians(wrapAngle), Math.acos(rPhy/vxPhy));
+			double pyMax = vxPhy*rPhy*Math.sin(phi)/(vxPhy - rPhy*Math.cos(phi));
+			while(first < imgW && yzGrid[0][(int)yzGrid[2][first]] < -pyMax) {
+				first++;
+			}
+			while(last > first && yzGrid[0][(int)yzGrid[2][last]] > pyMax) {
+				last--;
+			}
+		}
+		return new int[] {first, last};
+	}
+	
+	//makes pixels outside the drawn columns (see keptPixels) transparent, in place
+	static void cullWrap(int[] imgPixels, double[] newImgSize, double[][] yzGrid, double rPhy, double vxPhy) {
+		int[] kept = keptPixels(yzGrid, rPhy, vxPhy);
+		int imgW   = (int)newImgSize[0];
+		if(kept[0] == 0 && kept[1] == imgW) {
+			return;
+		}
+		for(int row=0; row<imgPixels.length; row+=imgW) {
+			Arrays.fill(imgPixels, row, row + kept[0], 0);
+			Arrays.fill(imgPixels, row + kept[1], row + imgW, 0);
+		}
+	}
+	
+	//reads pixels of decoded input image, resized to new image size with
+	//resizeFilter (see Resampler), ignored color becomes transparent
+	static int[] decodePixels(BufferedImage img, double[] newImgSize) {
+		int imgW = (int)newImgSize[0];
+		int imgH = (int)newImgSize[1];
+		try (RenderReport.Phase resize = RenderReport.phase("resize")) {
+			resize.pixels((long)imgW*imgH);
+			int[] pixels = Resampler.pixels(img);
+			int srcW = img.getWidth();
+			int srcH = img.getHeight();
+			if(srcW == imgW && srcH == imgH) {
+				return maskIgnored(pixels);
+			}
+			return maskIgnored(Resampler.resize(pixels, srcW, srcH, imgW, imgH, resizeFilter));
+		}
+	}
+	
+	//sets pixels of ignored color to transparent
+	private static int[] maskIgnored(int[] imgPixels) {
+		if(ignoreColor != null) {
+			int ignoreArgb = toArgb(ignoreColor);
+			for(int k=0; k<imgPixels.length; k++) {
+				if(imgPixels[k] == ignoreArgb) {
+					imgPixels[k] = 0;
+				}
+			}
+		}
+		return imgPixels;
+	}
+	
+	//gathers polygon points of input pixels (i,j0) to (i,j1-1) from output grid,
+	//top points sweep right and bottom points sweep left, as x,y pairs.
+	//Returns number of points.
+	private static int runPoints(double[][] xyGrid, int rowLen, int[] col, int i, int j0, int j1, double[] polyPoints) {
+		int l = 0;
+		int startR = col[j0] + i*rowLen;
+		int stopR  = col[j1] + i*rowLen;
+		for(int k=startR; k<=stopR; k++) {  //sweep right (top points)
+			polyPoints[l]   = xyGrid[1][k]; //x coordinate
+			polyPoints[l+1] = xyGrid[0][k]; //y coordinate
+			l += 2;
+		}
+		int stopL  = col[j0] + (i+1)*rowLen;
+		int startL = col[j1] + (i+1)*rowLen;
+		for(int k=startL; k>=stopL; k--) {  //sweep left (bottom points)
+			polyPoints[l]   = xyGrid[1][k]; //x coordinate
+			polyPoints[l+1] = xyGrid[0][k]; //y coordinate
+			l += 2;
+		}
+		return l/2;
+	}
+	
+	//max grid points along one side of a run polygon (see runEnd)
+	private static int runCapacity(int[] col) {
+		int max = 0;
+		for(int j=0; j<col.length - 1; j++) {
+			max = Math.max(max, col[Math.min(j + MAX_RUN, col.length - 1)] - col[j]);
+		}
+		return max + 1;
+	}
+	
+	//end (exclusive) of the run of visible pixels from (i,j) that is filled as
+	//one polygon, grid row gi holds the top points of row i. A run has one
+	//color, at most MAX_RUN pixels and quads that all face the same way: where
+	//the grid folds over behind the cylinder, a merged polygon would cancel
+	//itself under the non-zero winding rule. Pixels in uniform blocks of the
+	//run's color are not read, and runs stop before WHOLE blocks (see Occupancy).
+	static int runEnd(int[] imgPixels, int imgW, Occupancy occ, double[][] grid, int rowLen, int[] col, int gi, int i, int j) {
+		int row  = i*imgW;
+		int argb = imgPixels[row + j];
+		int end  = j + 1;
+		if(!mergeRuns) {
+			return end;
+		}
+		int max  = occ.nextWhole(i, j, Math.min(j + MAX_RUN, imgW));
+		int same = occ.uniformEnd(i, j, argb);
+		boolean facing = quadFacing(grid, rowLen, col, gi, j);
+		while(end < max && (end < same || imgPixels[row + end] == argb) && quadFacing(grid, rowLen, col, gi, end) == facing) {
+			end++;
+		}
+		return end;
+	}
+	
+	//true if quad of pixel j (grid row gi) has positive area, corners in polygon order
+	private static boolean quadFacing(double[][] grid, int rowLen, int[] col, int gi, int j) {
+		int tl = col[j] + gi*rowLen;   //top left, then top right, bottom right, bottom left
+		int tr = col[j+1] + gi*rowLen;
+		int br = tr + rowLen;
+		int bl = tl + rowLen;
+		return (grid[1][tl] - grid[1][br])*(grid[0][tr] - grid[0][bl])
+				- (grid[1][tr] - grid[1][bl])*(grid[0][tl] - grid[0][br]) > 0;
+	}
+	
+	//converts color to packed non-premultiplied ARGB
+	static int toArgb(Color color) {
+		return (int)Math.round(color.getOpacity()*255)<<24
+				| (int)Math.round(color.getRed()*255)<<16
+				| (int)Math.round(color.getGreen()*255)<<8
+				| (int)Math.round(color.getBlue()*255);
+	}
+	
+	//converts packed non-premultiplied ARGB to color
+	static Color toColor(int argb) {
+		return Color.rgb((argb>>16) & 0xff, (argb>>8) & 0xff, argb & 0xff, (argb>>>24)/255.0);
+	}
+	
+	static double[] offsets(double[][] yzGrid, double rPhy, double vxPhy, double vzPhy, double[] newImgSize) {
+		//Finds output offsets {minX, minY} in Cartesian coordinates.
+        
+        //minimum x and y of drawn grid points, exact rather than sampled
+        double[] bounds = bounds(yzGrid, rPhy, vxPhy, vzPhy);
+        double minX = Math.floor(bounds[0]);
+        double minY = Math.floor(bounds[1]);
+        
+        //keep cylinder visible in output
+        if(minX > -Math.ceil(rPhy) && drawCylinder) {
+            minX = -Math.ceil(rPhy);
+        }
+        
+        return new double[] {minX, minY};
+	}
+	
+	static double[][] xyGrid(double[][] yzGrid, GridMapper mapper, double[] newImgSize) {
+		return xyGrid(yzGrid, mapper, newImgSize, null);
+	}
+	
+	static double[][] xyGrid(final double[][] yzGrid, final GridMapper mapper, double[] newImgSize, final Occupancy occ) {
+		//Maps all picture plane grid points to output pixel coordinates.
+		//Column terms are computed once by GridMapper, then blocks of grid
+		//rows are filled in parallel with two multiply-adds per point. Rows no
+		//visible pixel uses (see Occupancy) are left 0.
+        
+        //anamorphic image / Cartesian xy-plane
+        //2D array row0: x and row1: y
+        final double[][] xyGrid = new double[2][yzGrid[0].length*yzGrid[1].length];
+        final int rows   = yzGrid[1].length;
+        final int blockH = Math.max(GRID_BLOCK/yzGrid[0].length, 1); //grid rows per block
+        
+        Parallel.forRange(threads, 0, (rows + blockH - 1)/blockH, block -> {
+        	for(int i=block*blockH; i<Math.min((block + 1)*blockH, rows); i++) {
+        		if(occ == null || occ.gridRowUsed(i)) {
+        			mapper.row(yzGrid[1][i], xyGrid[0], xyGrid[1], i*mapper.columns());
+        		}
+        	}
+        });
+        
+        return xyGrid;
+	}
+	
+	static double[] newImgSize(double[] imgSize) {
+		//Image size at native DPI, scaled down when more than 3 input pixels
+		//fall on an output pixel or when the render would not fit in memory
+		//with the current engine and tile options (see RenderPlan).
+		return RenderPlan.plan(imgSize, false).newImgSize;
+	}
+	
+	static double[] nativeImgSize(double[] imgSize) {
         
         //max width and height of picture plane
         double maxW = 2*r;
         double maxH = (vx*h - vz*r)/(vx - r);
         
-        //calculate aspect ratios
-        double ppAspect  = maxW/maxH;
-        double imgAspect = imgSize[0]/imgSize[1];
-        
         //find native DPI of image
         double dpiN;
-        double maxDim[] = new double[2]; //image constraints
-        if(imgAspect > ppAspect) {       //scaling constrained by width
-        	dpiN      = imgSize[0]/maxW;
-        	maxDim[0] = maxW;
-        	maxDim[1] = imgSize[0];
-        } else {                         //scaling constrained by height
-        	dpiN      = imgSize[1]/maxH;
-        	maxDim[0] = maxH;
-        	maxDim[1] = imgSize[1];
+        if(imgSize[0]/imgSize[1] > maxW/maxH) { //scaling constrained by width
+        	dpiN = imgSize[0]/maxW;
+        } else {                                //scaling constrained by height
+        	dpiN = imgSize[1]/maxH;
         }
         
-        double[] newImgSize = {imgSize[0],imgSize[1],dpiN};
-        
-        //RESIZE IMAGE
-        
-        //if dpiN/dpiT > 3 or constraining dimension > 2400 pixels,
-        //resize image such that dpiN/dpiT <= 3 and maxDim <= 2000
-        //second condition helps reduce ram for systems with <= 32GiB RAM
-        //first allows larger images to be used by scaling them down during
-        //polygon creation, thus improving output resolution
-        
-        if(dpiN/dpiT > 3 || 2400/maxDim[1] < 1) {
-        	//down-scale factor
-        	double s;
-        	if(3*maxDim[0]*dpiT <= 2000) {
-        		s = 3;
-        	} else if(2.5*maxDim[0]*dpiT <= 2000) {
-        		s = 2.5;
-        	} else if(2*maxDim[0]*dpiT <= 2000) {
-        		s = 2;
-        	} else if(1.5*maxDim[0]*dpiT <= 2000) {
-        		s = 1.5;
-        	} else {
-        		s = 1;
-        	}
-        	
-        	if(imgAspect > ppAspect) { //resize constrained by width
-                newImgSize[0] = Math.floor(s*maxW*dpiT);             //resizeW
-                newImgSize[1] = Math.floor((s*maxW*dpiT)/imgAspect); //resizeH
-                newImgSize[2] = newImgSize[0]/maxW;                  //new native DPI
-            } else {                   //resize constrained by height
-                newImgSize[1] = Math.floor(s*maxH*dpiT);             //resizeH
-                newImgSize[0] = Math.floor(s*maxH*dpiT*imgAspect);   //resizeW
-                newImgSize[2] = newImgSize[1]/maxH;                  //new native DPI
-            }
+        return new double[] {imgSize[0],imgSize[1],dpiN};
+	}
+	
+	static double[] scaledImgSize(double[] imgSize, double s) {
+		//Resizes image to s input pixels per output pixel (dpiN = s*dpiT).
+		
+        //max width and height of picture plane
+        double maxW = 2*r;
+        double maxH = (vx*h - vz*r)/(vx - r);
+        
+        //calculate aspect ratios
+        double ppAspect  = maxW/maxH;
+        double imgAspect = imgSize[0]/imgSize[1];
+        
+        double[] newImgSize = new double[3];
+    	if(imgAspect > ppAspect) { //resize constrained by width
+            newImgSize[0] = Math.floor(s*maxW*dpiT);             //resizeW
+            newImgSize[1] = Math.floor((s*maxW*dpiT)/imgAspect); //resizeH
+            newImgSize[2] = newImgSize[0]/maxW;                  //new native DPI
+        } else {                   //resize constrained by height
+            newImgSize[1] = Math.floor(s*maxH*dpiT);             //resizeH
+            newImgSize[0] = Math.floor(s*maxH*dpiT*imgAspect);   //resizeW
+            newImgSize[2] = newImgSize[1]/maxH;                  //new native DPI
         }
         
         return newImgSize;
     }
 
-	private static double[][] yzGrid(double[] newImgSize) {
+	static double[][] yzGrid(double[] newImgSize) {
         //Generates pixel grid points and maps (x,y,0) pixel 
         //coordinates to (0,y,z) Cartesian coordinates.
         
+        //Pixel column j gets pts[j] interpolating points (see edgePoints),
+        //row2 holds the grid column of the left edge of each pixel column.
+        
         int imgW = (int)newImgSize[0];
         int imgH = (int)newImgSize[1];
+        int[] pts = edgePoints(newImgSize);
+        int cols  = imgW + 1;
+        for(int p : pts) {
+        	cols += p;
+        }
         
-        double[][] yzGrid = new double[2][];  //2D array row0: y points, row1: z points
-        yzGrid[0] = new double[imgW*(n+1)+1]; //y coordinates (from input x pixel coordinates)
+        double[][] yzGrid = new double[3][];  //2D array row0: y points, row1: z points, row2: pixel columns
+        yzGrid[0] = new double[cols];         //y coordinates (from input x pixel coordinates)
         yzGrid[1] = new double[imgH+1];       //z coordinates (from input y pixel coordinates)
+        yzGrid[2] = new double[imgW+1];       //grid column of left edge of each pixel column, then right image edge
         
         double hOffset = 0.5*imgW; //horizontal offset
         
         //generate Cartesian y coordinates
-        for(int i=0; i<yzGrid[0].length; i++) {
-            yzGrid[0][i] = (double)i/(n+1) - hOffset; 
+        int k = 0;
+        for(int j=0; j<imgW; j++) {
+        	int m = pts[j] + 1; //parts of pixel edge
+        	yzGrid[2][j] = k;
+        	for(int p=0; p<m; p++) {
+        		yzGrid[0][k++] = (double)(j*m + p)/m - hOffset;
+        	}
         }
+        yzGrid[2][imgW] = k;
+        yzGrid[0][k]    = imgW - hOffset;
         
         //generate Cartesian z coordinates
         for(int i=imgH; i>=0; i--) {
@@ -384,7 +1333,77 @@ public class Transform {
         return yzGrid;
     }
     
-    private static double[] anamorphicT(double r, double vx, double vz, double py, double pz) {
+    //grid column of the left edge of each pixel column, then of the right image edge
+    static int[] pixelColumns(double[][] yzGrid) {
+    	int[] col = new int[yzGrid[2].length];
+    	for(int j=0; j<col.length; j++) {
+    		col[j] = (int)yzGrid[2][j];
+    	}
+    	return col;
+    }
+    
+    static int[] edgePoints(double[] newImgSize) {
+    	//Interpolating points of each pixel column: n everywhere, or with
+    	//meshTolerance set as few as keep the horizontal pixel edges within
+    	//meshTolerance output pixels of their curves (at most MAX_POINTS).
+    	//Edges near the middle are nearly straight and get none, edges at the
+    	//left and right image sides wrap around the cylinder and get the most.
+    	
+    	int imgW  = (int)newImgSize[0];
+    	int[] pts = new int[imgW];
+    	if(meshTolerance <= 0) {
+    		Arrays.fill(pts, n);
+    		return pts;
+    	}
+    	
+    	double dpiN  = newImgSize[2];
+    	double rPhy  = dpiN*r;
+    	double vxPhy = dpiN*vx;
+    	double vzPhy = dpiN*vz;
+    	double s     = dpiN/dpiT;
+    	
+    	//a grid column is a line in q = vz/(vz - pz) (see GridMapper), so
+    	//chord errors are largest on the top or bottom grid row
+    	double[] q = {vzPhy/(vzPhy - newImgSize[1]), 1};
+    	
+    	//columns are symmetric about py = 0, right half is measured and mirrored
+    	double hOffset = 0.5*imgW;
+    	for(int j=imgW/2; j<imgW; j++) {
+    		int m = 0;
+    		while(m < MAX_POINTS && chordError(rPhy, vxPhy, q, j - hOffset, m + 1)/s > meshTolerance) {
+    			m++;
+    		}
+    		pts[j] = pts[imgW-1-j] = m;
+    	}
+    	return pts;
+    }
+    
+    private static double chordError(double r, double vx, double[] q, double py0, int parts) {
+    	//Largest distance (input pixel units) between the grid row curves of
+    	//picture plane [py0, py0 + 1] at q and their chords, when split into
+    	//parts. Measured at the middle of each chord.
+    	
+    	double[] a = new double[4]; //line terms of chord start, middle and end
+    	double[] m = new double[4];
+    	double[] b = new double[4];
+    	GridMapper.lineTerms(r, vx, py0, a);
+    	double err = 0;
+    	for(int p=0; p<parts; p++) {
+    		GridMapper.lineTerms(r, vx, py0 + (p + 0.5)/parts, m);
+    		GridMapper.lineTerms(r, vx, py0 + (p + 1.0)/parts, b);
+    		for(double qk : q) {
+    			double dx = m[0] + m[1]*qk - 0.5*(a[0] + a[1]*qk + b[0] + b[1]*qk);
+    			double dy = m[2] + m[3]*qk - 0.5*(a[2] + a[3]*qk + b[2] + b[3]*qk);
+    			err = Math.max(err, Math.sqrt(dx*dx + dy*dy));
+    		}
+    		double[] t = a;
+    		a = b;
+    		b = t;
+    	}
+    	return err;
+    }
+    
+    static double[] anamorphicT(double r, double vx, double vz, double py, double pz) {
     	//Method uses extensive simplifications for case: vy=0 and px=0.
         //For a general solution, where vy and px may be arbitrary, see derivation.
         
@@ -404,4 +1423,40 @@ public class Transform {
         
     	return anamorphImgPt;
     }
+    
+    static void anamorphicT(double r, double vx, double vz, double[] py, double[] pz,
+    		double[] x, double[] y, int len) {
+    	//Batched anamorphicT for grid generation: maps (0,py[k],pz[k]) to
+    	//(x[k],y[k],0) for k < len into caller supplied arrays.
+    	//Nothing is allocated per point, powers are plain multiplies and terms
+    	//of r and vx alone are hoisted out of the loop. The loop body is
+    	//straight-line code over arrays so the JIT can unroll and vectorize it.
+    	//Results agree with anamorphicT to rounding error.
+    	
+    	final double r2  = r*r;
+    	final double ir2 = 1/r2;
+    	final double vx2 = vx*vx;
+    	
+    	for(int k=0; k<len; k++) {
+    		double p   = py[k];
+    		double q   = pz[k];
+    		double p2  = p*p;
+    		double vxp = vx*p;
+    		
+    		//t parameter for intersection with cylinder
+    		double ts = (vx2 - Math.sqrt(r2*(p2 + vx2) - vxp*vxp))/(p2 + vx2);
+    		double tp = ts*p;
+    		
+    		//A' lies on the cylinder, so |A'|^2 = (ts*py)^2 + (vx(1 - ts))^2 = r^2
+    		double idz = 1/(vz - q);
+    		double w   = idz*ir2;
+    		
+    		//u parameter for midpoint of line A'A
+    		double um = vxp*(ts*(q - vz) + vz)*w;
+    		
+    		//anamorphic image point
+    		x[k] = 2*(vx - ts*(um*p + vx)) + vx*q*idz; //Cartesian x-coordinate
+    		y[k] = 2*(tp + vx*um*(1 - ts)) - vz*p*idz; //Cartesian y-coordinate
+    	}
+    }
 }
\ No newline at end of file